@@ -2,21 +2,79 @@ package com.consultoria.app.config;
 
 import com.consultoria.app.tcp.TCPBridge;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
 
     @Autowired
     private TCPBridge tcpBridge;
 
+    /**
+     * Buffers de texto e binário do container, alocados por sessão; mensagens
+     * maiores chegam em partes ao TCPBridge, que aplica os limites por mensagem
+     */
+    @Value("${tcp.bridge.message-buffer-bytes:32768}")
+    private int messageBufferBytes;
+
+    /** Aceita compressão permessage-deflate quando o navegador oferece */
+    @Value("${tcp.bridge.permessage-deflate:true}")
+    private boolean permessageDeflate;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(tcpBridge, "/tcp-bridge")
+                .setHandshakeHandler(new BridgeHandshakeHandler(permessageDeflate))
                 .setAllowedOrigins("*");
     }
+
+    /**
+     * Buffers do container WebSocket: pequenos, porque cada sessão aloca os
+     * dois na abertura; uploads chegam ao TCPBridge em partes deste tamanho
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(messageBufferBytes);
+        container.setMaxBinaryMessageBufferSize(messageBufferBytes);
+        return container;
+    }
+
+    /**
+     * Negocia permessage-deflate (suportado pelo container) ou o remove da
+     * lista pedida pelo navegador quando desligado
+     */
+    private static class BridgeHandshakeHandler extends DefaultHandshakeHandler {
+        private final boolean permessageDeflate;
+
+        BridgeHandshakeHandler(boolean permessageDeflate) {
+            this.permessageDeflate = permessageDeflate;
+        }
+
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                List<WebSocketExtension> requestedExtensions, List<WebSocketExtension> supportedExtensions) {
+            List<WebSocketExtension> requested = new ArrayList<>();
+            for (WebSocketExtension extension : requestedExtensions) {
+                if (permessageDeflate || !PERMESSAGE_DEFLATE.equals(extension.getName())) {
+                    requested.add(extension);
+                }
+            }
+            return super.filterRequestedExtensions(request, requested, supportedExtensions);
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package com.consultoria.app.controller;
+
+import com.consultoria.app.tcp.CommandRouter;
+import com.consultoria.app.tcp.CompressionMetrics;
+import com.consultoria.app.tcp.OutboundQueue;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.consultoria.app.tcp.TCPServer;
+import com.consultoria.app.tcp.TcpConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monitoramento do servidor TCP/IP
+ */
+@RestController
+@RequestMapping("/api/tcp")
+@CrossOrigin(origins = "*")
+public class TcpMonitorController {
+    @Autowired
+    private TCPServer tcpServer;
+
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private CommandRouter commandRouter;
+
+    /**
+     * Lista conexões abertas com a profundidade da fila de saída de cada uma
+     */
+    @GetMapping("/connections")
+    public ResponseEntity<List<Map<String, Object>>> getConnections() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (TcpConnection connection : tcpServer.getConnectionRegistry().getConnections()) {
+            OutboundQueue outbound = connection.getOutbound();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", connection.getId());
+            item.put("remoteAddress", connection.getRemoteAddress());
+            item.put("connectedAt", connection.getConnectedAt());
+            item.put("inFlight", connection.getInFlight());
+            item.put("queuedBytes", outbound.getQueuedBytes());
+            item.put("queuedFrames", outbound.getQueuedFrames());
+            item.put("writable", outbound.isWritable());
+            item.put("unwritableSince", outbound.getUnwritableSince());
+            item.put("subscriptions", subscriptionRegistry.getTopics(connection));
+            result.add(item);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Razão de compressão e tempo de deflate por tipo de comando
+     */
+    @GetMapping("/compression")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCompression() {
+        return ResponseEntity.ok(CompressionMetrics.getInstance().snapshot());
+    }
+
+    /**
+     * Chamadas, erros e latência por rota (type, action)
+     */
+    @GetMapping("/routes")
+    public ResponseEntity<List<Map<String, Object>>> getRoutes() {
+        return ResponseEntity.ok(commandRouter.snapshot());
+    }
+}
@@ -1,7 +1,9 @@
 package com.consultoria.app.repository;
 
 import com.consultoria.app.model.Evaluation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+
 import java.util.List;
 import java.util.Optional;
 
@@ -9,4 +11,8 @@ public interface EvaluationRepository extends JpaRepository<Evaluation, Long> {
     Optional<Evaluation> findByRequestId(Long requestId);
 
     List<Evaluation> findByRequestConsultantId(Long consultantId);
+
+    // Página por chave para respostas em partes: linhas com id acima do último enviado
+    List<Evaluation> findByRequestConsultantIdAndIdGreaterThanOrderByIdAsc(Long consultantId, Long afterId,
+            Pageable page);
 }
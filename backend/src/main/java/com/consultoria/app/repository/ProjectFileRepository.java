@@ -1,9 +1,14 @@
 package com.consultoria.app.repository;
 
 import com.consultoria.app.model.ProjectFile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+
 import java.util.List;
 
 public interface ProjectFileRepository extends JpaRepository<ProjectFile, Long> {
     List<ProjectFile> findByRequestId(Long requestId);
+
+    // Página por chave para respostas em partes: linhas com id acima do último enviado
+    List<ProjectFile> findByRequestIdAndIdGreaterThanOrderByIdAsc(Long requestId, Long afterId, Pageable page);
 }
@@ -1,7 +1,9 @@
 package com.consultoria.app.repository;
 
 import com.consultoria.app.model.Request;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+
 import java.util.List;
 
 public interface RequestRepository extends JpaRepository<Request, Long> {
@@ -10,4 +12,9 @@ public interface RequestRepository extends JpaRepository<Request, Long> {
     List<Request> findByConsultantId(Long consultantId);
 
     List<Request> findByStatus(String status);
+
+    // Página por chave para respostas em partes: linhas com id acima do último enviado
+    List<Request> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long afterId, Pageable page);
+
+    List<Request> findByConsultantIdAndIdGreaterThanOrderByIdAsc(Long consultantId, Long afterId, Pageable page);
 }
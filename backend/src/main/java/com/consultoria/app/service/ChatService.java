@@ -6,6 +6,8 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.ChatMessageRepository;
 import com.consultoria.app.repository.ProjectRepository;
 import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -22,6 +24,9 @@ public class ChatService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
     public ChatMessage sendMessage(Long projectId, Long userId, String content) {
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Projeto não encontrado"));
@@ -42,7 +47,9 @@ public class ChatService {
         message.setSender(user);
         message.setContent(content);
 
-        return chatMessageRepository.save(message);
+        ChatMessage saved = chatMessageRepository.save(message);
+        publishMessage(saved);
+        return saved;
     }
 
     public List<ChatMessage> getMessagesByProjectId(Long projectId, Long userId) {
@@ -59,4 +66,24 @@ public class ChatService {
 
         return chatMessageRepository.findByProjectIdOrderByTimestampAsc(projectId);
     }
+
+    /**
+     * Envia a mensagem aos assinantes TCP do chat do projeto, no mesmo
+     * formato retornado por GET /api/chat/{projectId}/messages
+     */
+    private void publishMessage(ChatMessage message) {
+        JsonObject sender = new JsonObject();
+        sender.addProperty("id", message.getSender().getId());
+        sender.addProperty("name", message.getSender().getName());
+
+        JsonObject eventData = new JsonObject();
+        eventData.addProperty("id", message.getId());
+        eventData.addProperty("projectId", message.getProject().getId());
+        eventData.addProperty("content", message.getContent());
+        eventData.addProperty("timestamp", message.getTimestamp().toString());
+        eventData.add("sender", sender);
+
+        subscriptionRegistry.publish(SubscriptionRegistry.projectChatTopic(message.getProject().getId()),
+                "MESSAGE", eventData);
+    }
 }
@@ -8,7 +8,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
 /**
@@ -26,6 +28,15 @@ public class FileStorageService {
      * @return Caminho relativo do arquivo salvo
      */
     public String saveFile(String base64Data, String fileName) throws IOException {
+        return saveFile(Base64.decodeBase64(base64Data), fileName);
+    }
+
+    /**
+     * Salva arquivo a partir dos bytes (seção binária do protocolo TCP)
+     *
+     * @return Caminho relativo do arquivo salvo
+     */
+    public String saveFile(byte[] fileBytes, String fileName) throws IOException {
         // Cria diretório se não existir
         File directory = new File(uploadDir);
         if (!directory.exists()) {
@@ -36,11 +47,16 @@ public class FileStorageService {
         String uniqueFileName = UUID.randomUUID().toString() + "_" + sanitizeFileName(fileName);
         String filePath = uploadDir + File.separator + uniqueFileName;
 
-        // Decodifica Base64 e salva
-        byte[] fileBytes = Base64.decodeBase64(base64Data);
-        try (FileOutputStream fos = new FileOutputStream(filePath)) {
+        // Salva em arquivo temporário; só aparece no destino quando completo
+        // (um shutdown no meio não deixa arquivo parcial)
+        Path partial = Paths.get(filePath + ".part");
+        try (FileOutputStream fos = new FileOutputStream(partial.toFile())) {
             fos.write(fileBytes);
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
         }
+        Files.move(partial, Paths.get(filePath), StandardCopyOption.ATOMIC_MOVE);
 
         return uniqueFileName;
     }
@@ -49,9 +65,15 @@ public class FileStorageService {
      * Lê arquivo e retorna em Base64
      */
     public String getFileAsBase64(String fileName) throws IOException {
+        return Base64.encodeBase64String(readFile(fileName));
+    }
+
+    /**
+     * Lê arquivo como bytes
+     */
+    public byte[] readFile(String fileName) throws IOException {
         String filePath = uploadDir + File.separator + fileName;
-        byte[] fileBytes = Files.readAllBytes(Paths.get(filePath));
-        return Base64.encodeBase64String(fileBytes);
+        return Files.readAllBytes(Paths.get(filePath));
     }
 
     /**
@@ -71,6 +93,13 @@ public class FileStorageService {
      */
     public boolean validateFileSize(String base64Data) {
         long sizeInBytes = (base64Data.length() * 3) / 4; // Aproximação do tamanho real
+        return validateFileSize(sizeInBytes);
+    }
+
+    /**
+     * Valida tamanho do arquivo em bytes (max 10MB)
+     */
+    public boolean validateFileSize(long sizeInBytes) {
         long maxSize = 10 * 1024 * 1024; // 10MB
         return sizeInBytes <= maxSize;
     }
@@ -2,6 +2,8 @@ package com.consultoria.app.service;
 
 import com.consultoria.app.model.Request;
 import com.consultoria.app.repository.RequestRepository;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.List;
@@ -11,6 +13,9 @@ public class RequestService {
     @Autowired
     private RequestRepository requestRepository;
 
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
     public Request createRequest(Request request) {
         return requestRepository.save(request);
     }
@@ -27,6 +32,13 @@ public class RequestService {
         Request req = requestRepository.findById(requestId).orElseThrow(() -> new RuntimeException("Not found"));
         req.setStatus(status);
         // Set consultant if accepting
-        return requestRepository.save(req);
+        Request saved = requestRepository.save(req);
+
+        JsonObject eventData = new JsonObject();
+        eventData.addProperty("id", saved.getId());
+        eventData.addProperty("status", saved.getStatus().toString());
+        eventData.addProperty("progress", saved.getProgress());
+        subscriptionRegistry.publish(SubscriptionRegistry.requestTopic(saved.getId()), "STATUS", eventData);
+        return saved;
     }
 }
@@ -0,0 +1,198 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexão TCP de uma sessão WebSocket no modo socket do TCPBridge. Todas as
+ * sessões compartilham o mesmo {@link NioReactor}: nenhuma thread fica
+ * bloqueada em readLine por sessão. Cada linha recebida vira uma mensagem
+ * de texto enfileirada no {@link WebSocketSender} da sessão, escrita fora
+ * do reactor; o que o navegador envia é escrito pelo reactor,
+ * com as mensagens acumuladas saindo numa única escrita.
+ */
+public class BridgeChannel implements NioHandler {
+    private static final Logger log = LoggerFactory.getLogger(BridgeChannel.class);
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final NioReactor reactor;
+    private final WebSocketSender session;
+    private final FrameDecoder decoder;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final Deque<ByteBuffer> writes = new ArrayDeque<>();
+    /** Mensagens do navegador ainda não entregues ao reactor */
+    private final Queue<ByteBuffer> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private SelectionKey key;
+    private volatile boolean closed = false;
+
+    private BridgeChannel(SocketChannel channel, NioReactor reactor, WebSocketSender session, int maxFrameBytes) {
+        this.channel = channel;
+        this.reactor = reactor;
+        this.session = session;
+        this.decoder = new FrameDecoder(maxFrameBytes);
+    }
+
+    /**
+     * Conecta ao servidor TCP (bloqueante, só o connect, até connectTimeoutMs)
+     * e registra o canal no reactor
+     */
+    public static BridgeChannel open(NioReactor reactor, String host, int port, int connectTimeoutMs,
+            WebSocketSender session, int maxFrameBytes) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port), connectTimeoutMs);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channel.configureBlocking(false);
+        BridgeChannel bridgeChannel = new BridgeChannel(channel, reactor, session, maxFrameBytes);
+        reactor.execute(() -> {
+            try {
+                bridgeChannel.key = channel.register(reactor.getSelector(), SelectionKey.OP_READ, bridgeChannel);
+            } catch (IOException e) {
+                log.error("Erro ao registrar canal do bridge", e);
+                bridgeChannel.closeNow();
+            }
+        });
+        return bridgeChannel;
+    }
+
+    /**
+     * Enfileira a mensagem do navegador; a escrita acontece na thread do
+     * reactor, uma tarefa por rajada em vez de uma por mensagem
+     */
+    public void send(String payload) {
+        if (closed) {
+            return;
+        }
+        byte[] json = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1);
+        line.put(json).put((byte) '\n').flip();
+        incoming.add(line);
+        if (flushScheduled.compareAndSet(false, true)) {
+            reactor.execute(this::flushIncoming);
+        }
+    }
+
+    private void flushIncoming() {
+        flushScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        ByteBuffer line;
+        while ((line = incoming.poll()) != null) {
+            writes.add(line);
+        }
+        onWritable();
+    }
+
+    @Override
+    public void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                closeNow();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                try {
+                    ByteBuffer frame = decoder.decode(readBuffer);
+                    if (frame != null) {
+                        // Só enfileira no WebSocketSender da sessão: o reactor não espera o navegador
+                        int start = frame.arrayOffset() + frame.position();
+                        session.sendMessage(new TextMessage(
+                                Arrays.copyOfRange(frame.array(), start, start + frame.remaining())));
+                    }
+                } catch (FrameDecoder.FrameTooLongException e) {
+                    log.warn("Resposta descartada para sessão {}: {}", session.getId(), e.getMessage());
+                }
+            }
+            readBuffer.clear();
+        } catch (IOException e) {
+            log.debug("Erro ao ler do TCP para sessão {}: {}", session.getId(), e.getMessage());
+            closeNow();
+        }
+    }
+
+    @Override
+    public void onWritable() {
+        if (key == null) {
+            // Registro no selector falhou; o canal já foi fechado
+            return;
+        }
+        try {
+            while (!writes.isEmpty()) {
+                // Escrita agrupada: várias linhas pendentes num só write
+                ByteBuffer[] batch = writes.stream().limit(MAX_GATHER).toArray(ByteBuffer[]::new);
+                channel.write(batch);
+                while (!writes.isEmpty() && !writes.peek().hasRemaining()) {
+                    writes.poll();
+                }
+                if (batch[batch.length - 1].hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            log.debug("Erro ao enviar mensagem para TCP: {}", e.getMessage());
+            closeNow();
+        }
+    }
+
+    /**
+     * Fecha o canal; pode ser chamado de qualquer thread
+     */
+    public void close() {
+        if (reactor.inReactorThread()) {
+            closeNow();
+        } else {
+            reactor.execute(this::closeNow);
+        }
+    }
+
+    @Override
+    public void closeNow() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writes.clear();
+        incoming.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("Erro ao fechar socket TCP", e);
+        }
+        // Servidor fechou a conexão: a sessão WebSocket acompanha
+        try {
+            if (session.isOpen()) {
+                session.close();
+            }
+        } catch (IOException e) {
+            log.error("Erro ao fechar sessão WebSocket", e);
+        }
+    }
+}
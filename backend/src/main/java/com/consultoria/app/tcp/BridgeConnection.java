@@ -0,0 +1,164 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Sessão WebSocket do TCPBridge atendida no mesmo processo do TCPServer:
+ * cada mensagem de texto é decodificada uma vez e vai direto ao
+ * CommandDispatcher, sem socket de loopback nem thread de leitura. Aparece
+ * no ConnectionRegistry como qualquer conexão (SUBSCRIBE, drain, monitor,
+ * max-connections e consumidores lentos): os envios passam pelo
+ * {@link WebSocketSender}, contados no OutboundQueue da conexão.
+ * Mensagens binárias levam um frame do {@link LengthPrefixedFrameCodec}
+ * ([tamanho do JSON][tamanho do binário][JSON][binário]): o conteúdo de
+ * arquivos vai cru nos dois sentidos, sem base64.
+ */
+public class BridgeConnection implements TcpConnection {
+    private static final Logger log = LoggerFactory.getLogger(BridgeConnection.class);
+
+    private final String id;
+    private final WebSocketSession session;
+    private final CommandDispatcher dispatcher;
+    private final ConnectionRegistry registry;
+    private final ConnectionSettings settings;
+    private final OutboundQueue outbound;
+    private final WebSocketSender sender;
+    private final LineFrameCodec codec;
+    private final LengthPrefixedFrameCodec binaryCodec;
+    private final String remoteAddress;
+    private final long connectedAt = System.currentTimeMillis();
+    private volatile long lastActivity = connectedAt;
+
+    public BridgeConnection(WebSocketSession session, CommandDispatcher dispatcher,
+            ConnectionRegistry registry, ConnectionSettings settings, Executor writer) {
+        this.id = registry.nextId();
+        this.session = session;
+        this.dispatcher = dispatcher;
+        this.registry = registry;
+        this.settings = settings;
+        this.outbound = new OutboundQueue(settings);
+        this.sender = new WebSocketSender(session, outbound, writer, this::close);
+        this.codec = new LineFrameCodec(settings.getMaxFrameBytes());
+        this.binaryCodec = new LengthPrefixedFrameCodec(settings.getMaxFrameBytes());
+        this.remoteAddress = "ws:" + session.getRemoteAddress();
+        registry.register(this);
+    }
+
+    /**
+     * Executa o comando na thread do WebSocket e responde na mesma sessão
+     */
+    public void handle(String payload) {
+        lastActivity = System.currentTimeMillis();
+        byte[] json = payload.getBytes(StandardCharsets.UTF_8);
+        if (json.length > settings.getMaxFrameBytes()) {
+            send(Protocol.createError("unknown", "Frame excede " + settings.getMaxFrameBytes() + " bytes"));
+            return;
+        }
+        send(dispatcher.dispatch(new FrameCodec.Frame(ByteBuffer.wrap(json), null), this));
+    }
+
+    /**
+     * Como {@link #handle(String)}, para uma mensagem binária com um frame
+     * completo; a seção binária chega ao handler em Message.getBinary()
+     */
+    public void handleBinary(ByteBuffer payload) {
+        lastActivity = System.currentTimeMillis();
+        FrameCodec.Frame frame;
+        try {
+            // Um codec por mensagem: cada mensagem WebSocket é um frame inteiro
+            frame = new LengthPrefixedFrameCodec(settings.getMaxFrameBytes()).decode(payload);
+        } catch (FrameDecoder.FrameTooLongException e) {
+            send(Protocol.createError("unknown", "Frame excede " + settings.getMaxFrameBytes() + " bytes"));
+            return;
+        } catch (IOException e) {
+            send(Protocol.createError("unknown", "Frame binário inválido"));
+            return;
+        }
+        if (frame == null || payload.hasRemaining()) {
+            send(Protocol.createError("unknown", "Frame binário incompleto"));
+            return;
+        }
+        send(dispatcher.dispatch(frame, this));
+    }
+
+    /**
+     * Chamado quando a sessão WebSocket fecha
+     */
+    public void closed() {
+        registry.unregister(this);
+        sender.clear();
+    }
+
+    @Override
+    public void send(Protocol.Response response) {
+        if (response == null || !isOpen()) {
+            return;
+        }
+        WebSocketMessage<?> message;
+        if (response.getBinary() != null) {
+            message = new BinaryMessage(binaryCodec.encode(response));
+        } else {
+            byte[] encoded = codec.encode(response);
+            // Sem o '\n' do enquadramento por linha: o frame WebSocket já delimita
+            message = new TextMessage(Arrays.copyOf(encoded, encoded.length - 1));
+        }
+        // Fila ordenada contada em outbound: EVENT e resposta concorrentes saem em ordem,
+        // e quem chama (thread do container, publicador do EVENT) não espera o navegador
+        sender.sendMessage(message);
+    }
+
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } catch (IOException e) {
+            log.debug("Erro ao fechar WebSocket {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+
+    @Override
+    public int getInFlight() {
+        return 0;
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+}
@@ -0,0 +1,237 @@
+package com.consultoria.app.tcp;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Codificação CBOR (RFC 8949) da mesma Message/Response do JSON, negociada
+ * no HELLO com "encoding": "cbor". Números vão como inteiros/floats binários
+ * e a estrutura é lida sem parse de texto. Uma byte string direto em data
+ * (ex.: "content" do UPLOAD) chega ao handler crua, por Message.getBinary(),
+ * como a seção binária do enquadramento com prefixo de tamanho; mais de uma,
+ * ou em outro nível, torna a mensagem inválida.
+ */
+public final class CborEncoding {
+    private static final CBORFactory FACTORY = new CBORFactory();
+
+    /** Aninhamento máximo aceito em data (evita estouro de pilha na recursão) */
+    private static final int MAX_DEPTH = 64;
+
+    private CborEncoding() {
+    }
+
+    /**
+     * Deserializa Message dos bytes do frame, sem alterar a posição do buffer;
+     * null se o CBOR for inválido
+     */
+    public static Protocol.Message decode(ByteBuffer cbor) {
+        try (JsonParser parser = FACTORY.createParser(cbor.array(),
+                cbor.arrayOffset() + cbor.position(), cbor.remaining())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            Protocol.Message message = new Protocol.Message();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("type".equals(field)) {
+                    message.setType(scalar(parser, token));
+                } else if ("sessionId".equals(field)) {
+                    message.setSessionId(scalar(parser, token));
+                } else if ("requestId".equals(field)) {
+                    // Aceita requestId numérico; o modelo guarda como texto
+                    message.setRequestId(scalar(parser, token));
+                } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                    message.setData(readData(parser, message));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return message;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Serializa Response em CBOR, com os mesmos campos do JSON
+     */
+    public static byte[] encode(Protocol.Response response) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (CBORGenerator generator = FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            writeString(generator, "type", response.getType());
+            writeString(generator, "requestId", response.getRequestId());
+            generator.writeBooleanField("success", response.isSuccess());
+            writeString(generator, "message", response.getMessage());
+            if (response.getSeq() != null) {
+                generator.writeNumberField("seq", response.getSeq());
+                if (response.getLast() != null) {
+                    generator.writeBooleanField("last", response.getLast());
+                }
+            }
+            if (response.getPayload() != null) {
+                // Payload tipado vai do TypeAdapter direto para o gerador CBOR
+                generator.writeFieldName("data");
+                Protocol.writePayload(response.getPayload(), new CborJsonWriter(generator));
+            } else if (response.getData() != null) {
+                generator.writeFieldName("data");
+                writeTree(generator, response.getData());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // ByteArrayOutputStream não lança IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String scalar(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            throw new IOException("Campo deveria ser texto ou número");
+        }
+        return parser.getValueAsString();
+    }
+
+    /**
+     * Lê data; a byte string de primeiro nível vai para a seção binária da
+     * Message sem passar por texto
+     */
+    private static JsonObject readData(JsonParser parser, Protocol.Message message) throws IOException {
+        JsonObject data = new JsonObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                if (message.getBinary() != null) {
+                    throw new IOException("Mais de uma byte string em data");
+                }
+                message.setBinary(parser.getBinaryValue());
+            } else {
+                data.add(name, readTree(parser, token, 1));
+            }
+        }
+        return data;
+    }
+
+    private static JsonElement readTree(JsonParser parser, JsonToken token, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Aninhamento acima de " + MAX_DEPTH);
+        }
+        switch (token) {
+            case START_OBJECT:
+                JsonObject object = new JsonObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    object.add(name, readTree(parser, parser.nextToken(), depth + 1));
+                }
+                return object;
+            case START_ARRAY:
+                JsonArray array = new JsonArray();
+                JsonToken next;
+                while ((next = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.add(readTree(parser, next, depth + 1));
+                }
+                return array;
+            case VALUE_STRING:
+                return new JsonPrimitive(parser.getText());
+            case VALUE_NUMBER_INT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    return new JsonPrimitive(parser.getBigIntegerValue());
+                }
+                return new JsonPrimitive(parser.getLongValue());
+            case VALUE_NUMBER_FLOAT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+                    return new JsonPrimitive(parser.getDecimalValue());
+                }
+                return new JsonPrimitive(parser.getDoubleValue());
+            case VALUE_TRUE:
+                return new JsonPrimitive(true);
+            case VALUE_FALSE:
+                return new JsonPrimitive(false);
+            case VALUE_NULL:
+                return JsonNull.INSTANCE;
+            default:
+                // Inclui byte strings fora do primeiro nível de data
+                throw new IOException("Token CBOR inesperado: " + token);
+        }
+    }
+
+    static void writeTree(CBORGenerator generator, JsonElement element) throws IOException {
+        if (element == null || element.isJsonNull()) {
+            generator.writeNull();
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            generator.writeStartObject();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                // Como no JSON, membros nulos são omitidos
+                if (entry.getValue().isJsonNull()) {
+                    continue;
+                }
+                generator.writeFieldName(entry.getKey());
+                writeTree(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            generator.writeStartArray(array, array.size());
+            for (JsonElement item : array) {
+                writeTree(generator, item);
+            }
+            generator.writeEndArray();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                generator.writeBoolean(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                writeNumber(generator, primitive.getAsNumber());
+            } else {
+                generator.writeString(primitive.getAsString());
+            }
+        }
+    }
+
+    static void writeNumber(CBORGenerator generator, Number number) throws IOException {
+        if (number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte) {
+            generator.writeNumber(number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            generator.writeNumber(number.doubleValue());
+        } else if (number instanceof BigInteger) {
+            generator.writeNumber((BigInteger) number);
+        } else if (number instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) number);
+        } else {
+            // Número lido de texto JSON (LazilyParsedNumber): inteiro quando couber em long
+            String text = number.toString();
+            try {
+                generator.writeNumber(Long.parseLong(text));
+            } catch (NumberFormatException e) {
+                generator.writeNumber(Double.parseDouble(text));
+            }
+        }
+    }
+
+    private static void writeString(CBORGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.consultoria.app.tcp;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JsonWriter que repassa cada token ao CBORGenerator, para os TypeAdapters
+ * dos payloads escreverem CBOR sem passar por árvore Gson. Como no JSON,
+ * membros nulos são omitidos (salvo com serializeNulls).
+ */
+class CborJsonWriter extends JsonWriter {
+    private static final Writer UNUSED = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            throw new UnsupportedOperationException("CborJsonWriter não escreve texto");
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final CBORGenerator generator;
+    private String deferredName;
+
+    CborJsonWriter(CBORGenerator generator) {
+        super(UNUSED);
+        this.generator = generator;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeDeferredName();
+        generator.writeStartArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        generator.writeEndArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeDeferredName();
+        generator.writeStartObject();
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        generator.writeEndObject();
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (deferredName != null) {
+            throw new IllegalStateException("Nome " + deferredName + " sem valor");
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        generator.writeString(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        CborEncoding.writeTree(generator, JsonParser.parseString(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null) {
+            if (!getSerializeNulls()) {
+                deferredName = null;
+                return this;
+            }
+            writeDeferredName();
+        }
+        generator.writeNull();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeDeferredName();
+        generator.writeBoolean(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        writeDeferredName();
+        generator.writeNumber(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        writeDeferredName();
+        generator.writeNumber(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        generator.writeNumber(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        CborEncoding.writeNumber(generator, value);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // O gerador é descarregado por quem o criou
+    }
+
+    @Override
+    public void close() {
+        // O gerador é fechado por quem o criou
+    }
+
+    private void writeDeferredName() throws IOException {
+        if (deferredName != null) {
+            generator.writeFieldName(deferredName);
+            deferredName = null;
+        }
+    }
+}
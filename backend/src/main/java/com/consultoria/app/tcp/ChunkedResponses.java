@@ -0,0 +1,139 @@
+package com.consultoria.app.tcp;
+
+import com.google.gson.JsonElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Respostas de listagem em partes. Com data.chunkSize no pedido, as linhas
+ * são lidas em páginas por chave (id acima do último enviado) e enviadas em
+ * vários frames RESPONSE com o mesmo requestId, numerados em "seq"; o último
+ * tem "last": true. Cada página é lida e convertida em sua própria transação
+ * curta, então a memória por pedido fica limitada ao chunk atual e a espera
+ * pela fila de saída da conexão, entre frames, não segura conexão JDBC nem
+ * cursor aberto. Linhas inseridas durante a listagem podem aparecer nela.
+ */
+@Component
+public class ChunkedResponses {
+    private static final Logger log = LoggerFactory.getLogger(ChunkedResponses.class);
+
+    @Value("${tcp.server.chunked.max-chunk-size:500}")
+    private int maxChunkSize;
+
+    @Value("${tcp.server.outbound.slow-consumer-timeout-ms:60000}")
+    private long writableTimeoutMs;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTemplate;
+
+    /**
+     * Lê a próxima página: linhas com id maior que afterId, em ordem de id
+     */
+    @FunctionalInterface
+    public interface KeysetPage<T> {
+        List<T> next(Long afterId, Pageable page);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    /**
+     * O cliente pediu resposta em partes e ela pode ser enviada na conexão.
+     * chunkSize que não é número também entra, para {@link #stream} responder o erro.
+     */
+    public boolean isRequested(Protocol.Message message) {
+        if (message.getConnection() == null || message.getData() == null) {
+            return false;
+        }
+        JsonElement chunkSize = message.getData().get("chunkSize");
+        if (chunkSize == null || chunkSize.isJsonNull()) {
+            return false;
+        }
+        return !isNumber(chunkSize) || chunkSize.getAsInt() > 0;
+    }
+
+    /**
+     * Envia os frames intermediários direto na conexão e retorna o frame
+     * final, respondido pelo dispatcher como uma resposta comum.
+     * O payloadFactory roda dentro da transação da página (associações lazy podem ser lidas).
+     */
+    public <T> Protocol.Response stream(Protocol.Message message, String responseMessage,
+            KeysetPage<T> rows, Function<T, Long> idOf, Function<List<T>, Object> payloadFactory) {
+        JsonElement requested = message.getData().get("chunkSize");
+        if (!isNumber(requested)) {
+            return Protocol.createError(message.getRequestId(), "chunkSize deve ser um número");
+        }
+        int chunkSize = Math.min(requested.getAsInt(), maxChunkSize);
+        TcpConnection connection = message.getConnection();
+        // Uma linha a mais diz se a página atual é a última
+        Pageable page = PageRequest.of(0, chunkSize + 1);
+
+        Long afterId = 0L;
+        int seq = 0;
+        while (true) {
+            Long from = afterId;
+            Chunk chunk = readOnlyTemplate.execute(status -> {
+                List<T> found = rows.next(from, page);
+                boolean last = found.size() <= chunkSize;
+                List<T> items = last ? found : found.subList(0, chunkSize);
+                Long lastId = items.isEmpty() ? from : idOf.apply(items.get(items.size() - 1));
+                return new Chunk(payloadFactory.apply(items), lastId, last);
+            });
+
+            if (chunk.last) {
+                return Protocol.createChunk(message.getRequestId(), responseMessage, chunk.payload, seq, true);
+            }
+            connection.send(Protocol.createChunk(message.getRequestId(), responseMessage,
+                    chunk.payload, seq++, false));
+            afterId = chunk.lastId;
+
+            // Fora da transação: um cliente lento não prende conexão do pool JDBC
+            if (!awaitWritable(connection)) {
+                log.warn("Listagem {} interrompida: conexão {} não consome os frames",
+                        message.getRequestId(), connection.getId());
+                return Protocol.createError(message.getRequestId(), "Listagem interrompida");
+            }
+        }
+    }
+
+    private static boolean isNumber(JsonElement element) {
+        return element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber();
+    }
+
+    private boolean awaitWritable(TcpConnection connection) {
+        try {
+            return connection.getOutbound().awaitWritable(writableTimeoutMs) && connection.isOpen();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class Chunk {
+        private final Object payload;
+        private final Long lastId;
+        private final boolean last;
+
+        Chunk(Object payload, Long lastId, boolean last) {
+            this.payload = payload;
+            this.lastId = lastId;
+            this.last = last;
+        }
+    }
+}
@@ -1,76 +1,137 @@
 package com.consultoria.app.tcp;
 
-import com.consultoria.app.tcp.handler.CommandHandler;
-import com.consultoria.app.tcp.Protocol.Message;
 import com.consultoria.app.tcp.Protocol.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Handler para cada conexão de cliente TCP/IP
+ * Handler para cada conexão de cliente TCP/IP (modo bloqueante).
+ * Com maxInFlight > 1 os comandos rodam em pipeline no commandPool e cada
+ * resposta é escrita assim que fica pronta.
+ * As respostas passam por uma fila de saída limitada: quem enfileira não
+ * espera pelo socket, e a leitura para enquanto a fila estiver cheia.
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, TcpConnection {
     private static final Logger log = LoggerFactory.getLogger(ClientHandler.class);
+    private static final int READ_BUFFER_SIZE = 8192;
 
+    private final String id;
     private final Socket clientSocket;
-    private final Map<String, CommandHandler> commandHandlers;
-    private final SessionManager sessionManager;
-    private boolean running = true;
+    private final CommandDispatcher dispatcher;
+    private final ConnectionRegistry registry;
+    private final IdleMonitor idleMonitor;
+    private final ConnectionSettings settings;
+    private final Executor commandPool;
+    private final Executor writer;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final OutboundQueue outbound;
+    private volatile FrameCodec codec;
+    private boolean firstFrame = true;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private final ByteBuffer readView = ByteBuffer.wrap(readBuffer);
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private final String remoteAddress;
+    private final long connectedAt = System.currentTimeMillis();
+    private volatile long lastActivity = connectedAt;
+    /** Comando em execução no modo sequencial (sem commandPool) */
+    private volatile boolean dispatching = false;
+    private OutputStream out;
+    private volatile boolean running = true;
 
-    public ClientHandler(Socket socket, Map<String, CommandHandler> handlers) {
+    public ClientHandler(Socket socket, CommandDispatcher dispatcher, ConnectionRegistry registry,
+            IdleMonitor idleMonitor, ConnectionSettings settings, Executor commandPool, Executor writer) {
+        this.id = registry.nextId();
         this.clientSocket = socket;
-        this.commandHandlers = handlers;
-        this.sessionManager = SessionManager.getInstance();
+        this.dispatcher = dispatcher;
+        this.registry = registry;
+        this.idleMonitor = idleMonitor;
+        this.settings = settings;
+        this.maxInFlight = Math.max(1, settings.getMaxInFlight());
+        this.commandPool = maxInFlight > 1 ? commandPool : null;
+        this.writer = writer;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.outbound = new OutboundQueue(settings);
+        this.codec = new LineFrameCodec(settings.getMaxFrameBytes());
+        this.readView.limit(0);
+        this.remoteAddress = String.valueOf(socket.getInetAddress());
     }
 
     @Override
     public void run() {
-        try (
-                BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)) {
+        registry.register(this);
+        try (InputStream in = clientSocket.getInputStream()) {
+            out = new BufferedOutputStream(clientSocket.getOutputStream());
+            idleMonitor.watch(this);
             log.info("Cliente conectado: {}", clientSocket.getInetAddress());
 
-            String inputLine;
-            while (running && (inputLine = in.readLine()) != null) {
-                try {
-                    // Decodifica mensagem
-                    Message message = Protocol.decode(inputLine);
-
-                    if (!Protocol.isValid(message)) {
-                        Response errorResponse = Protocol.createError(
-                                message != null ? message.getRequestId() : "unknown",
-                                "Mensagem inválida");
-                        out.println(Protocol.encodeResponse(errorResponse));
+            FrameCodec.Frame frame;
+            while (running && awaitWritable() && (frame = readFrame(in)) != null) {
+                if (firstFrame) {
+                    firstFrame = false;
+                    if (negotiate(frame)) {
                         continue;
                     }
+                }
 
-                    log.info("Comando recebido: {} de {}",
-                            message.getType(), clientSocket.getInetAddress());
-
-                    // Processa comando
-                    Response response = processCommand(message);
-
-                    // Envia resposta
-                    out.println(Protocol.encodeResponse(response));
+                if (commandPool == null) {
+                    // Processa comando e envia resposta
+                    dispatching = true;
+                    try {
+                        send(dispatcher.dispatch(frame, this));
+                    } finally {
+                        dispatching = false;
+                        lastActivity = System.currentTimeMillis();
+                    }
+                    continue;
+                }
 
-                } catch (Exception e) {
-                    log.error("Erro ao processar mensagem", e);
-                    Response errorResponse = Protocol.createError("unknown",
-                            "Erro interno: " + e.getMessage());
-                    out.println(Protocol.encodeResponse(errorResponse));
+                // Pipeline: bloqueia a leitura quando o limite de comandos em andamento é atingido
+                inFlight.acquire();
+                // Permissão global reservada antes de enfileirar: acima do limite responde BUSY daqui
+                if (!dispatcher.tryAdmit()) {
+                    inFlight.release();
+                    send(dispatcher.reject(frame, this));
+                    continue;
                 }
+                FrameCodec.Frame pipelined = frame;
+                commandPool.execute(() -> {
+                    try {
+                        send(dispatcher.dispatchAdmitted(pipelined, this));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            if (commandPool != null) {
+                // Aguarda comandos em andamento antes de fechar o socket
+                inFlight.acquire(maxInFlight);
             }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
-            log.error("Erro na conexão com cliente", e);
+            if (running) {
+                log.error("Erro na conexão com cliente", e);
+            }
+        } catch (RuntimeException e) {
+            log.error("Erro inesperado na conexão {} ({})", id, remoteAddress, e);
         } finally {
+            registry.unregister(this);
+            outbound.clear();
+            codec.release();
             try {
                 clientSocket.close();
                 log.info("Cliente desconectado: {}", clientSocket.getInetAddress());
@@ -81,26 +142,163 @@ public class ClientHandler implements Runnable {
     }
 
     /**
-     * Processa comando usando handler apropriado
+     * Trata HELLO no primeiro frame: responde no enquadramento atual e troca
+     * para o negociado antes de ler o próximo frame
+     */
+    private boolean negotiate(FrameCodec.Frame frame) {
+        Handshake handshake = Handshake.accept(frame, codec, settings);
+        if (handshake == null) {
+            return false;
+        }
+        send(handshake.getResponse());
+        codec = handshake.getCodec();
+        log.info("Conexão {} negociou enquadramento {} ({})", id, codec.getFraming(), codec.getEncoding());
+        return true;
+    }
+
+    /**
+     * Lê o próximo frame completo do socket, ou null no fim do stream.
+     * Frames acima do tamanho máximo são respondidos com erro e descartados.
+     */
+    private FrameCodec.Frame readFrame(InputStream in) throws IOException {
+        while (true) {
+            try {
+                FrameCodec.Frame frame = codec.decode(readView);
+                if (frame != null) {
+                    return frame;
+                }
+            } catch (FrameDecoder.FrameTooLongException e) {
+                log.warn("Frame de {} ({}) rejeitado: {}", id, remoteAddress, e.getMessage());
+                send(Protocol.createError("unknown", e.getMessage()));
+                continue;
+            }
+
+            int read = in.read(readBuffer);
+            if (read < 0) {
+                return null;
+            }
+            lastActivity = System.currentTimeMillis();
+            readView.position(0);
+            readView.limit(read);
+        }
+    }
+
+    /**
+     * Não lê novos comandos enquanto a fila de saída estiver acima do high
+     * watermark; desconecta se o cliente continuar lento após o prazo
      */
-    private Response processCommand(Message message) {
-        String commandType = message.getType();
-        CommandHandler handler = commandHandlers.get(commandType);
+    private boolean awaitWritable() throws InterruptedException {
+        if (outbound.awaitWritable(settings.getSlowConsumerTimeoutMs())) {
+            return true;
+        }
+        log.warn("Desconectando consumidor lento {} ({})", id, remoteAddress);
+        close();
+        return false;
+    }
 
-        if (handler == null) {
-            return Protocol.createError(message.getRequestId(),
-                    "Comando desconhecido: " + commandType);
+    /**
+     * Enfileira resposta e escreve no socket se nenhuma outra thread estiver
+     * escrevendo
+     */
+    @Override
+    public void send(Response response) {
+        if (enqueue(response)) {
+            flushOutbound();
         }
+    }
 
+    /**
+     * Enfileira e deixa a escrita para o writer (ou para a thread que já
+     * está escrevendo): quem publica o EVENT não bloqueia em socket lento
+     */
+    @Override
+    public void sendAsync(Response response) {
+        if (!enqueue(response) || writing.get()) {
+            return;
+        }
         try {
-            return handler.handle(message, sessionManager);
-        } catch (Exception e) {
-            log.error("Erro ao executar handler para " + commandType, e);
-            return Protocol.createError(message.getRequestId(),
-                    "Erro ao processar comando: " + e.getMessage());
+            writer.execute(this::flushOutbound);
+        } catch (RejectedExecutionException e) {
+            close();
         }
     }
 
+    private boolean enqueue(Response response) {
+        if (response == null || !isOpen()) {
+            return false;
+        }
+        byte[] encoded = codec.encode(response);
+        if (!outbound.offer(ByteBuffer.wrap(encoded))) {
+            log.warn("Fila de saída excedeu o limite para {} ({})", id, remoteAddress);
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    private void flushOutbound() {
+        while (!outbound.isEmpty() && writing.compareAndSet(false, true)) {
+            try {
+                ByteBuffer frame;
+                while ((frame = outbound.peek()) != null) {
+                    // Um cliente que parou de ler trava o write: a marca deixa o
+                    // closeSlowConsumers fechar o socket mesmo abaixo do high watermark
+                    outbound.writeStarted();
+                    out.write(frame.array(), frame.position(), frame.remaining());
+                    outbound.remove(frame);
+                    if (outbound.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Erro de escrita em {}: {}", remoteAddress, e.getMessage());
+                close();
+                return;
+            } finally {
+                outbound.writeFinished();
+                writing.set(false);
+            }
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+
+    @Override
+    public int getInFlight() {
+        if (commandPool == null) {
+            return dispatching ? 1 : 0;
+        }
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return running && out != null && !clientSocket.isClosed();
+    }
+
     /**
      * Para execução do handler
      */
@@ -112,4 +310,9 @@ public class ClientHandler implements Runnable {
             log.error("Erro ao fechar socket", e);
         }
     }
+
+    @Override
+    public void close() {
+        stop();
+    }
 }
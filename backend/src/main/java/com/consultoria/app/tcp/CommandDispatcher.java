@@ -0,0 +1,259 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.Protocol.Message;
+import com.consultoria.app.tcp.Protocol.Response;
+import com.consultoria.app.tcp.handler.CommandHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodifica frames recebidos e despacha para o CommandHandler registrado.
+ * Compartilhado pelos modos de I/O bloqueante e NIO.
+ */
+public class CommandDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(CommandDispatcher.class);
+
+    private final CommandRouter router;
+    private final SessionManager sessionManager;
+    private final AtomicInteger activeCommands = new AtomicInteger();
+    private volatile boolean draining = false;
+    private Semaphore commandPermits;
+    private long busyRetryAfterMs = 1000;
+
+    public CommandDispatcher(CommandRouter router) {
+        this(router, SessionManager.getInstance());
+    }
+
+    public CommandDispatcher(CommandRouter router, SessionManager sessionManager) {
+        this.router = router;
+        this.sessionManager = sessionManager;
+    }
+
+    public CommandDispatcher(Map<String, CommandHandler> handlers) {
+        this(new CommandRouter());
+        for (CommandHandler handler : handlers.values()) {
+            router.register(handler);
+        }
+    }
+
+    /**
+     * Processa um frame completo (uma linha JSON) e retorna a resposta,
+     * ou null quando o frame não exige resposta (PONG)
+     */
+    public Response dispatch(String frame, String remoteAddress) {
+        return dispatch(new FrameCodec.Frame(ByteBuffer.wrap(frame.getBytes(StandardCharsets.UTF_8)), null),
+                remoteAddress);
+    }
+
+    /**
+     * Como {@link #dispatch(String, String)}, repassando a seção binária do
+     * frame (enquadramento com prefixo de tamanho) para a Message
+     */
+    public Response dispatch(FrameCodec.Frame frame, String remoteAddress) {
+        return dispatch(frame, remoteAddress, null);
+    }
+
+    /**
+     * Como {@link #dispatch(FrameCodec.Frame, String)}, repassando a conexão
+     * de origem para comandos que a usam depois da resposta (SUBSCRIBE)
+     */
+    public Response dispatch(FrameCodec.Frame frame, TcpConnection connection) {
+        return dispatch(frame, connection.getRemoteAddress(), connection);
+    }
+
+    /**
+     * Como {@link #dispatch(FrameCodec.Frame, TcpConnection)} para frame já
+     * admitido por {@link #tryAdmit()}; devolve a permissão ao terminar
+     */
+    public Response dispatchAdmitted(FrameCodec.Frame frame, TcpConnection connection) {
+        try {
+            return dispatch(frame, connection.getRemoteAddress(), connection, true);
+        } finally {
+            if (commandPermits != null) {
+                commandPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Reserva uma permissão do limite global antes de enfileirar o frame no
+     * pool de workers. Chamado pela thread que lê o socket: com a fila dos
+     * workers cheia o cliente recebe BUSY na hora, via {@link #reject}.
+     */
+    public boolean tryAdmit() {
+        return commandPermits == null || commandPermits.tryAcquire();
+    }
+
+    /**
+     * Resposta a frame não admitido: BUSY (ou o erro de drain), e PING/PONG
+     * tratados normalmente para o heartbeat não falhar com o servidor cheio
+     */
+    public Response reject(FrameCodec.Frame frame, TcpConnection connection) {
+        Message message;
+        try {
+            message = frame.decode();
+        } catch (Exception e) {
+            return Protocol.createError("unknown", "Mensagem inválida");
+        }
+        if (!Protocol.isValid(message)) {
+            return Protocol.createError(message != null ? message.getRequestId() : "unknown", "Mensagem inválida");
+        }
+        if (Protocol.PING.equals(message.getType())) {
+            return Protocol.createPong(message.getRequestId());
+        }
+        if (Protocol.PONG.equals(message.getType())) {
+            return null;
+        }
+        if (draining) {
+            return Protocol.createDrainingError(message.getRequestId());
+        }
+        log.warn("Comando {} de {} rejeitado: servidor ocupado", message.getType(), connection.getRemoteAddress());
+        return Protocol.createBusy(message.getRequestId(), busyRetryAfterMs);
+    }
+
+    /**
+     * Devolve a permissão de {@link #tryAdmit()} de um frame que o pool de
+     * workers recusou (pool encerrado no drain) e monta o erro ao cliente
+     */
+    public Response abandon(FrameCodec.Frame frame) {
+        if (commandPermits != null) {
+            commandPermits.release();
+        }
+        String requestId = "unknown";
+        try {
+            Message message = frame.decode();
+            if (message != null && message.getRequestId() != null) {
+                requestId = message.getRequestId();
+            }
+        } catch (Exception e) {
+            // Sem requestId legível o erro vai como "unknown"
+        }
+        return draining ? Protocol.createDrainingError(requestId)
+                : Protocol.createError(requestId, "Servidor indisponível");
+    }
+
+    private Response dispatch(FrameCodec.Frame frame, String remoteAddress, TcpConnection connection) {
+        return dispatch(frame, remoteAddress, connection, false);
+    }
+
+    /**
+     * @param admitted permissão global já reservada por quem enfileirou o frame
+     */
+    private Response dispatch(FrameCodec.Frame frame, String remoteAddress, TcpConnection connection,
+            boolean admitted) {
+        activeCommands.incrementAndGet();
+        try {
+            // Decodifica mensagem
+            Message message = frame.decode();
+
+            if (!Protocol.isValid(message)) {
+                return Protocol.createError(
+                        message != null ? message.getRequestId() : "unknown",
+                        "Mensagem inválida");
+            }
+
+            // Heartbeat: qualquer frame já conta como atividade na conexão
+            if (Protocol.PING.equals(message.getType())) {
+                return Protocol.createPong(message.getRequestId());
+            }
+            if (Protocol.PONG.equals(message.getType())) {
+                return null;
+            }
+            // HELLO é tratado pela conexão, e só no primeiro frame
+            if (Protocol.HELLO.equals(message.getType())) {
+                return Protocol.createError(message.getRequestId(), "HELLO deve ser a primeira mensagem");
+            }
+            // Byte string do CBOR ou seção binária do frame, nunca as duas
+            if (frame.getBinary() != null) {
+                if (message.getBinary() != null) {
+                    return Protocol.createError(message.getRequestId(), "Mensagem inválida");
+                }
+                message.setBinary(frame.getBinary());
+            }
+            message.setConnection(connection);
+
+            // Em drain não aceita novos comandos; o cliente deve repetir em outro servidor
+            if (draining) {
+                return Protocol.createDrainingError(message.getRequestId());
+            }
+
+            // Acima da capacidade responde BUSY na hora em vez de enfileirar
+            boolean permit = !admitted && commandPermits != null;
+            if (permit && !commandPermits.tryAcquire()) {
+                log.warn("Comando {} de {} rejeitado: servidor ocupado", message.getType(), remoteAddress);
+                return Protocol.createBusy(message.getRequestId(), busyRetryAfterMs);
+            }
+
+            // Bulkhead do tipo de comando: FILE/AUTH lotados não consomem os workers dos demais
+            Semaphore bulkhead = router.getBulkhead(message.getType());
+            if (bulkhead != null && !bulkhead.tryAcquire()) {
+                if (permit) {
+                    commandPermits.release();
+                }
+                log.warn("Comando {} de {} rejeitado: limite do tipo atingido", message.getType(), remoteAddress);
+                return Protocol.createBusy(message.getRequestId(), busyRetryAfterMs);
+            }
+
+            try {
+                log.info("Comando recebido: {} de {}", message.getType(), remoteAddress);
+
+                Response response = processCommand(message);
+                if (response != null) {
+                    response.setCommand(message.getType());
+                }
+                return response;
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+                if (permit) {
+                    commandPermits.release();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Erro ao processar mensagem", e);
+            return Protocol.createError("unknown", "Erro interno: " + e.getMessage());
+        } finally {
+            activeCommands.decrementAndGet();
+        }
+    }
+
+    /**
+     * Limita comandos executando ao mesmo tempo (0 = sem limite)
+     */
+    public void setCommandLimit(int maxConcurrentCommands, long retryAfterMs) {
+        this.commandPermits = maxConcurrentCommands > 0 ? new Semaphore(maxConcurrentCommands) : null;
+        this.busyRetryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Limita execuções simultâneas de um tipo de comando (0 = sem limite próprio)
+     */
+    public void setBulkhead(String commandType, int maxConcurrent) {
+        router.setBulkhead(commandType, maxConcurrent);
+    }
+
+    public void setDraining(boolean draining) {
+        this.draining = draining;
+    }
+
+    /**
+     * Comandos sendo processados neste momento, em todas as conexões
+     */
+    public int getActiveCommands() {
+        return activeCommands.get();
+    }
+
+    /**
+     * Processa comando pela rota (type, action) registrada
+     */
+    public Response processCommand(Message message) {
+        return router.route(message, sessionManager);
+    }
+}
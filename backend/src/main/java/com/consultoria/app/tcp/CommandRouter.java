@@ -0,0 +1,248 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.Protocol.Message;
+import com.consultoria.app.tcp.Protocol.Response;
+import com.consultoria.app.tcp.handler.CommandAction;
+import com.consultoria.app.tcp.handler.CommandHandler;
+import com.google.gson.JsonElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tabela de rotas (type, action) montada na inicialização a partir dos
+ * métodos {@link CommandAction} de cada CommandHandler. O despacho é uma
+ * busca em mapa, sem switch por handler, e cada rota conta chamadas, erros
+ * e latência. Handlers sem actions anotadas viram uma rota única pelo type
+ * e continuam tratados por {@link CommandHandler#handle}.
+ */
+@Component
+public class CommandRouter {
+    private static final Logger log = LoggerFactory.getLogger(CommandRouter.class);
+
+    private final Map<String, Map<String, Route>> actionRoutes = new ConcurrentHashMap<>();
+    private final Map<String, Route> handlerRoutes = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * Registra as rotas do handler; falha na inicialização se alguma
+     * assinatura ou action estiver errada
+     */
+    public void register(CommandHandler handler) {
+        String type = handler.getCommandType();
+        Map<String, Route> routes = new HashMap<>();
+
+        for (Method method : ClassUtils.getUserClass(handler).getDeclaredMethods()) {
+            CommandAction action = method.getAnnotation(CommandAction.class);
+            if (action == null) {
+                continue;
+            }
+            Class<?>[] params = method.getParameterTypes();
+            boolean withUser = params.length == 2 && params[1] == User.class;
+            if (params.length != 2 || params[0] != Message.class
+                    || (!withUser && params[1] != SessionManager.class)
+                    || method.getReturnType() != Response.class) {
+                throw new IllegalStateException("Assinatura inválida para @CommandAction: " + method);
+            }
+            method.setAccessible(true);
+            if (routes.put(action.value(), new Route(type, action.value(), handler, method, withUser)) != null) {
+                throw new IllegalStateException("Action duplicada: " + type + " " + action.value());
+            }
+        }
+
+        if (routes.isEmpty()) {
+            handlerRoutes.put(type, new Route(type, null, handler, null, false));
+        } else {
+            actionRoutes.put(type, routes);
+            log.info("Rotas de {}: {}", type, routes.keySet());
+        }
+    }
+
+    /**
+     * Limita execuções simultâneas de um tipo de comando (0 = sem limite próprio).
+     * Fica no router para valer também nos sub-comandos de um BATCH.
+     */
+    public void setBulkhead(String type, int maxConcurrent) {
+        if (maxConcurrent > 0) {
+            bulkheads.put(type, new Semaphore(maxConcurrent));
+        } else {
+            bulkheads.remove(type);
+        }
+    }
+
+    /**
+     * Bulkhead do tipo, ou null quando o tipo usa só o limite global
+     */
+    public Semaphore getBulkhead(String type) {
+        return bulkheads.get(type);
+    }
+
+    public boolean hasRoute(String type) {
+        return handlerRoutes.containsKey(type) || actionRoutes.containsKey(type);
+    }
+
+    /**
+     * Resolve a rota de (type, action) e executa, medindo o tempo
+     */
+    public Response route(Message message, SessionManager sessionManager) {
+        String type = message.getType();
+        Route route;
+
+        Map<String, Route> routes = actionRoutes.get(type);
+        if (routes != null) {
+            JsonElement action = message.getData() != null ? message.getData().get("action") : null;
+            if (action == null || !action.isJsonPrimitive()) {
+                return Protocol.createError(message.getRequestId(), "Campo 'action' obrigatório");
+            }
+            String name = action.getAsString();
+            route = routes.get(name);
+            if (route == null) {
+                // Clientes antigos mandam a action em minúsculas
+                route = routes.get(name.toUpperCase(Locale.ROOT));
+            }
+            if (route == null) {
+                return Protocol.createError(message.getRequestId(), "Action inválida: " + name);
+            }
+        } else {
+            route = handlerRoutes.get(type);
+            if (route == null) {
+                return Protocol.createError(message.getRequestId(), "Comando desconhecido: " + type);
+            }
+        }
+
+        long start = System.nanoTime();
+        Response response = null;
+        try {
+            response = route.invoke(message, sessionManager);
+            return response;
+        } catch (Exception e) {
+            route.exceptions.increment();
+            log.error("Erro ao executar handler para " + route.getName(), e);
+            response = Protocol.createError(message.getRequestId(),
+                    "Erro ao processar comando: " + e.getMessage());
+            return response;
+        } finally {
+            route.record(System.nanoTime() - start, response);
+        }
+    }
+
+    /**
+     * Contadores de todas as rotas, ordenados por type e action
+     */
+    public List<Map<String, Object>> snapshot() {
+        Map<String, Route> sorted = new TreeMap<>();
+        for (Route route : handlerRoutes.values()) {
+            sorted.put(route.getName(), route);
+        }
+        for (Map<String, Route> routes : actionRoutes.values()) {
+            for (Route route : routes.values()) {
+                sorted.put(route.getName(), route);
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Route route : sorted.values()) {
+            result.add(route.snapshot());
+        }
+        return result;
+    }
+
+    private static class Route {
+        private final String type;
+        private final String action;
+        private final CommandHandler handler;
+        private final Method method;
+        private final boolean withUser;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder exceptions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Route(String type, String action, CommandHandler handler, Method method, boolean withUser) {
+            this.type = type;
+            this.action = action;
+            this.handler = handler;
+            this.method = method;
+            this.withUser = withUser;
+        }
+
+        String getName() {
+            return action != null ? type + " " + action : type;
+        }
+
+        Response invoke(Message message, SessionManager sessionManager) throws Exception {
+            if (method == null) {
+                return handler.handle(message, sessionManager);
+            }
+            if (!withUser) {
+                return call(message, sessionManager);
+            }
+
+            // Sub-comando de BATCH chega com o usuário já validado pelo lote
+            User user = message.getUser() != null ? message.getUser()
+                    : sessionManager.validateSession(message.getSessionId());
+            if (user == null) {
+                return Protocol.createError(message.getRequestId(), "Sessão inválida");
+            }
+            Response denied = handler.checkAccess(message, user);
+            if (denied != null) {
+                return denied;
+            }
+            return call(message, user);
+        }
+
+        private Response call(Message message, Object context) throws Exception {
+            try {
+                return (Response) method.invoke(handler, message, context);
+            } catch (InvocationTargetException e) {
+                // Repassa a exceção do handler, não a da reflexão
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+
+        void record(long nanos, Response response) {
+            calls.increment();
+            totalNanos.add(nanos);
+            if (response != null && !response.isSuccess()) {
+                errors.increment();
+            }
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long count = calls.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", type);
+            item.put("action", action);
+            item.put("calls", count);
+            item.put("errors", errors.sum());
+            item.put("exceptions", exceptions.sum());
+            item.put("avgMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / count));
+            item.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos.get()));
+            return item;
+        }
+    }
+}
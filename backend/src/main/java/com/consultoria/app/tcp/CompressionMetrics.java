@@ -0,0 +1,69 @@
+package com.consultoria.app.tcp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de compressão de frames por tipo de comando: volume antes e
+ * depois do deflate e tempo gasto comprimindo
+ */
+public class CompressionMetrics {
+    private static CompressionMetrics instance;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private CompressionMetrics() {
+    }
+
+    public static synchronized CompressionMetrics getInstance() {
+        if (instance == null) {
+            instance = new CompressionMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Registra um frame que passou pelo deflate (comprimido ou enviado cru por não ter ganho)
+     */
+    public void record(String command, int originalBytes, int sentBytes, long nanos) {
+        Stats entry = stats.computeIfAbsent(command, key -> new Stats());
+        entry.frames.increment();
+        entry.originalBytes.add(originalBytes);
+        entry.sentBytes.add(sentBytes);
+        entry.nanos.add(nanos);
+    }
+
+    /**
+     * Resumo por comando: frames, bytes, razão (enviado / original) e tempo médio
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats value = entry.getValue();
+            long frames = value.frames.sum();
+            long original = value.originalBytes.sum();
+            long sent = value.sentBytes.sum();
+            long nanos = value.nanos.sum();
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("frames", frames);
+            item.put("originalBytes", original);
+            item.put("sentBytes", sent);
+            item.put("ratio", original > 0 ? (double) sent / original : 1.0);
+            item.put("totalCpuMicros", nanos / 1000);
+            item.put("avgCpuMicros", frames > 0 ? nanos / 1000 / frames : 0);
+            result.put(entry.getKey(), item);
+        }
+        return result;
+    }
+
+    private static class Stats {
+        private final LongAdder frames = new LongAdder();
+        private final LongAdder originalBytes = new LongAdder();
+        private final LongAdder sentBytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,77 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Conexões TCP abertas, usadas para monitoramento e para desconectar
+ * consumidores lentos
+ */
+public class ConnectionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionRegistry.class);
+
+    private final Map<String, TcpConnection> connections = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Consumer<TcpConnection> unregisterListener;
+
+    public String nextId() {
+        return String.valueOf(sequence.incrementAndGet());
+    }
+
+    public void register(TcpConnection connection) {
+        connections.put(connection.getId(), connection);
+    }
+
+    public void unregister(TcpConnection connection) {
+        if (connections.remove(connection.getId()) != null && unregisterListener != null) {
+            unregisterListener.accept(connection);
+        }
+    }
+
+    /**
+     * Chamado uma vez por conexão fechada (ex.: remover assinaturas)
+     */
+    public void setUnregisterListener(Consumer<TcpConnection> unregisterListener) {
+        this.unregisterListener = unregisterListener;
+    }
+
+    public List<TcpConnection> getConnections() {
+        return new ArrayList<>(connections.values());
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * Fecha conexões com fila de saída acima do high watermark, ou com uma
+     * escrita bloqueante parada, há mais tempo que o limite
+     */
+    public void closeSlowConsumers(long timeoutMs) {
+        long now = System.currentTimeMillis();
+        for (TcpConnection connection : connections.values()) {
+            OutboundQueue outbound = connection.getOutbound();
+            long since = earliest(outbound.getUnwritableSince(), outbound.getWriteStartedAt());
+            if (since > 0 && now - since > timeoutMs) {
+                log.warn("Desconectando consumidor lento {} ({}): {} bytes na fila há {} ms",
+                        connection.getId(), connection.getRemoteAddress(),
+                        outbound.getQueuedBytes(), now - since);
+                connection.close();
+            }
+        }
+    }
+
+    private static long earliest(long first, long second) {
+        if (first == 0) {
+            return second;
+        }
+        return second == 0 ? first : Math.min(first, second);
+    }
+}
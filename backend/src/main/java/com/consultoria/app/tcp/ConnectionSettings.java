@@ -0,0 +1,48 @@
+package com.consultoria.app.tcp;
+
+import lombok.Data;
+
+/**
+ * Limites aplicados a cada conexão TCP (valores vindos de tcp.server.*)
+ */
+@Data
+public class ConnectionSettings {
+    /** Comandos simultâneos por conexão; 1 = sequencial */
+    private int maxInFlight = 1;
+
+    /** Acima deste volume na fila de saída a conexão para de ler */
+    private int outboundHighWatermark = 1024 * 1024;
+
+    /** A leitura volta quando a fila de saída cai abaixo deste volume */
+    private int outboundLowWatermark = 256 * 1024;
+
+    /** Volume máximo na fila de saída; acima disso a conexão é fechada */
+    private int outboundMaxBytes = 32 * 1024 * 1024;
+
+    /** Tempo máximo acima do high watermark antes de desconectar o cliente */
+    private long slowConsumerTimeoutMs = 60000;
+
+    /** Tamanho máximo de um frame recebido (um upload de 10MB vira ~13,4MB em base64) */
+    private int maxFrameBytes = 16 * 1024 * 1024;
+
+    /** Aceita troca para enquadramento com prefixo de tamanho via HELLO */
+    private boolean lengthPrefixedFraming = true;
+
+    /** Aceita "encoding": "cbor" no HELLO (requer prefixo de tamanho) */
+    private boolean cborEncoding = true;
+
+    /** Aceita a capability "deflate" no HELLO */
+    private boolean compressionEnabled = true;
+
+    /** Frames menores que isso vão sem compressão */
+    private int compressionThresholdBytes = 1024;
+
+    /** Nível do Deflater (1 = mais rápido, 9 = menor) */
+    private int compressionLevel = 6;
+
+    /** Conexões abertas simultâneas; novas conexões acima disso recebem BUSY */
+    private int maxConnections = 10000;
+
+    /** Intervalo sugerido ao cliente nas respostas BUSY */
+    private long busyRetryAfterMs = 1000;
+}
@@ -0,0 +1,90 @@
+package com.consultoria.app.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Enquadramento dos frames de uma conexão. Toda conexão começa com
+ * {@link LineFrameCodec} (JSON por linha); um HELLO no primeiro frame pode
+ * trocar para {@link LengthPrefixedFrameCodec}, que carrega binário sem base64.
+ * Não é thread-safe na leitura: cada conexão usa o seu.
+ */
+public interface FrameCodec {
+
+    /**
+     * Consome bytes de src até completar um frame; retorna null quando src
+     * acaba antes disso (os bytes ficam guardados para a próxima chamada)
+     *
+     * @throws FrameDecoder.FrameTooLongException frame acima do tamanho máximo;
+     *         ele é descartado e a conexão continua utilizável
+     * @throws IOException frame malformado, sem como ressincronizar
+     */
+    Frame decode(ByteBuffer src) throws IOException;
+
+    /**
+     * Serializa resposta no formato deste enquadramento
+     */
+    byte[] encode(Protocol.Response response);
+
+    /**
+     * Nome anunciado no HELLO
+     */
+    String getFraming();
+
+    /**
+     * Codificação das mensagens anunciada no HELLO
+     */
+    default String getEncoding() {
+        return Protocol.ENCODING_JSON;
+    }
+
+    /**
+     * Libera recursos do enquadramento (ex.: Deflater); chamado quando a conexão fecha
+     */
+    default void release() {
+    }
+
+    /**
+     * Frame recebido: mensagem em bytes (JSON UTF-8 ou CBOR) e seção binária opcional
+     */
+    class Frame {
+        private final ByteBuffer json;
+        private final byte[] binary;
+        private final boolean cbor;
+
+        public Frame(ByteBuffer json, byte[] binary) {
+            this(json, binary, false);
+        }
+
+        public Frame(ByteBuffer json, byte[] binary, boolean cbor) {
+            this.json = json;
+            this.binary = binary;
+            this.cbor = cbor;
+        }
+
+        /**
+         * Bytes da mensagem; leitores não devem alterar a posição do buffer
+         */
+        public ByteBuffer getJson() {
+            return json;
+        }
+
+        public byte[] getBinary() {
+            return binary;
+        }
+
+        /**
+         * A mensagem está em CBOR (negociado no HELLO), não em JSON
+         */
+        public boolean isCbor() {
+            return cbor;
+        }
+
+        /**
+         * Decodifica a mensagem conforme a codificação do frame; null se inválida
+         */
+        public Protocol.Message decode() {
+            return cbor ? CborEncoding.decode(json) : Protocol.decode(json);
+        }
+    }
+}
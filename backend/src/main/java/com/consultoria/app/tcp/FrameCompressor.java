@@ -0,0 +1,97 @@
+package com.consultoria.app.tcp;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate/inflate de frames de uma conexão que negociou a capability
+ * "deflate". Deflater e Inflater são reaproveitados entre frames e liberados
+ * no fechamento da conexão (usam memória nativa).
+ * A compressão pode vir de vários workers ao mesmo tempo e é serializada;
+ * a descompressão roda só na thread de leitura.
+ */
+public class FrameCompressor {
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+    private final int thresholdBytes;
+    private final CompressionMetrics metrics;
+    private boolean released = false;
+
+    public FrameCompressor(int level, int thresholdBytes, CompressionMetrics metrics) {
+        this.deflater = new Deflater(level);
+        this.thresholdBytes = thresholdBytes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Comprime o frame; retorna null se ele estiver abaixo do limiar ou se a
+     * compressão não diminuir o tamanho
+     */
+    public byte[] compress(byte[] frame, String command) {
+        if (frame.length < thresholdBytes) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        byte[] output = new byte[frame.length];
+        int length = 0;
+        synchronized (deflater) {
+            if (released) {
+                return null;
+            }
+            deflater.reset();
+            deflater.setInput(frame);
+            deflater.finish();
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            if (!deflater.finished()) {
+                length = -1;
+            }
+        }
+
+        byte[] compressed = length >= 0 ? Arrays.copyOf(output, length) : null;
+        metrics.record(command, frame.length, compressed != null ? compressed.length : frame.length,
+                System.nanoTime() - start);
+        return compressed;
+    }
+
+    /**
+     * Descomprime um frame recebido com o tamanho original anunciado no cabeçalho
+     */
+    public byte[] inflate(byte[] compressed, int originalLength) throws IOException {
+        byte[] output = new byte[originalLength];
+        try {
+            inflater.reset();
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < originalLength) {
+                int inflated = inflater.inflate(output, length, originalLength - length);
+                if (inflated == 0) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != originalLength) {
+                throw new IOException("Frame comprimido inválido");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Frame comprimido inválido", e);
+        }
+        return output;
+    }
+
+    /**
+     * Libera a memória nativa; chamado quando a conexão fecha
+     */
+    public void release() {
+        synchronized (deflater) {
+            released = true;
+            deflater.end();
+        }
+        inflater.end();
+    }
+}
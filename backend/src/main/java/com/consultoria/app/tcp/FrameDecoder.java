@@ -0,0 +1,127 @@
+package com.consultoria.app.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Separa frames (linhas JSON terminadas em '\n') direto do fluxo de bytes,
+ * sem passar por BufferedReader. Os frames saem como bytes UTF-8, lidos
+ * depois pelo JsonReader sem montar String intermediária. O buffer cresce sob demanda até
+ * maxFrameBytes; um frame maior é rejeitado na hora e o restante dele é
+ * descartado até o próximo '\n', sem nunca ficar inteiro em memória.
+ * Não é thread-safe: cada conexão usa o seu.
+ */
+public class FrameDecoder {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RETAINED_CAPACITY = INITIAL_CAPACITY * 64;
+
+    private final int maxFrameBytes;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length = 0;
+    private boolean discarding = false;
+
+    public FrameDecoder(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Consome bytes de src até completar um frame. Retorna null quando src
+     * acaba antes do '\n' (os bytes ficam guardados para a próxima chamada).
+     *
+     * @throws FrameTooLongException quando o frame atual passa de maxFrameBytes;
+     *         src continua posicionado para a próxima chamada
+     */
+    public ByteBuffer decode(ByteBuffer src) throws FrameTooLongException {
+        while (src.hasRemaining()) {
+            int newline = indexOfNewline(src);
+            int chunkEnd = newline >= 0 ? newline : src.limit();
+            int chunk = chunkEnd - src.position();
+
+            if (discarding) {
+                src.position(chunkEnd);
+            } else if (length + chunk > maxFrameBytes) {
+                // Descarta o restante do frame; se ele termina neste buffer, já volta ao normal
+                reset();
+                discarding = newline < 0;
+                src.position(newline >= 0 ? newline + 1 : chunkEnd);
+                throw new FrameTooLongException(maxFrameBytes);
+            } else {
+                ensureCapacity(length + chunk);
+                src.get(buffer, length, chunk);
+                length += chunk;
+            }
+
+            if (newline >= 0) {
+                src.get();
+                if (discarding) {
+                    discarding = false;
+                    continue;
+                }
+                return takeFrame();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bytes do frame incompleto guardados no momento
+     */
+    public int getBufferedBytes() {
+        return length;
+    }
+
+    private static int indexOfNewline(ByteBuffer src) {
+        for (int i = src.position(); i < src.limit(); i++) {
+            if (src.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private ByteBuffer takeFrame() {
+        int end = length > 0 && buffer[length - 1] == '\r' ? length - 1 : length;
+        ByteBuffer frame;
+        if (buffer.length > RETAINED_CAPACITY) {
+            // Frame grande (ex.: upload de arquivo): entrega o próprio buffer em vez de copiar
+            frame = ByteBuffer.wrap(buffer, 0, end);
+            buffer = new byte[INITIAL_CAPACITY];
+        } else {
+            frame = ByteBuffer.wrap(Arrays.copyOf(buffer, end));
+        }
+        length = 0;
+        return frame;
+    }
+
+    // Libera buffers grandes depois de um frame grande descartado
+    private void reset() {
+        length = 0;
+        if (buffer.length > RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > buffer.length) {
+            int newCapacity = (int) Math.min((long) maxFrameBytes, Math.max(required, buffer.length * 2L));
+            buffer = Arrays.copyOf(buffer, newCapacity);
+        }
+    }
+
+    /**
+     * Frame acima do tamanho máximo configurado
+     */
+    public static class FrameTooLongException extends IOException {
+        private final int maxFrameBytes;
+
+        public FrameTooLongException(int maxFrameBytes) {
+            super("Frame excede o tamanho máximo de " + maxFrameBytes + " bytes");
+            this.maxFrameBytes = maxFrameBytes;
+        }
+
+        public int getMaxFrameBytes() {
+            return maxFrameBytes;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.consultoria.app.tcp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Negociação do HELLO, aceito somente como primeiro frame da conexão.
+ * Cliente: {"type": "HELLO", "data": {"version": 2, "framing": "length-prefixed",
+ * "encoding": "cbor", "capabilities": ["binary", "deflate"]}}. A resposta ainda vai
+ * no enquadramento por linha, em JSON; os frames seguintes, nos dois sentidos, usam o
+ * enquadramento e a codificação aceitos.
+ * Clientes que não enviam HELLO continuam no JSON por linha.
+ */
+public final class Handshake {
+    private static final byte[] HELLO_BYTES = Protocol.HELLO.getBytes(StandardCharsets.US_ASCII);
+
+    private final Protocol.Response response;
+    private final FrameCodec codec;
+
+    private Handshake(Protocol.Response response, FrameCodec codec) {
+        this.response = response;
+        this.codec = codec;
+    }
+
+    /**
+     * Retorna a negociação se o frame for um HELLO, ou null caso contrário
+     */
+    public static Handshake accept(FrameCodec.Frame frame, FrameCodec current, ConnectionSettings settings) {
+        // Checagem barata antes de decodificar (o primeiro frame pode ser um upload grande)
+        if (!contains(frame.getJson(), HELLO_BYTES)) {
+            return null;
+        }
+        Protocol.Message message = Protocol.decode(frame.getJson());
+        if (message == null || !Protocol.HELLO.equals(message.getType())) {
+            return null;
+        }
+
+        JsonObject data = message.getData() != null ? message.getData() : new JsonObject();
+        // Campos vêm do cliente: tipo errado vira erro na resposta, e a conexão segue no enquadramento atual
+        String invalid = validate(data);
+        if (invalid != null) {
+            return new Handshake(Protocol.createError(message.getRequestId(), "HELLO inválido: " + invalid), current);
+        }
+        int version = data.has("version") ? data.get("version").getAsInt() : 1;
+        String framing = data.has("framing") ? data.get("framing").getAsString() : Protocol.FRAMING_LINE;
+        String encoding = data.has("encoding") ? data.get("encoding").getAsString() : Protocol.ENCODING_JSON;
+
+        // Binário cru, deflate e CBOR só fazem sentido com prefixo de tamanho
+        FrameCodec codec = current;
+        JsonArray capabilities = new JsonArray();
+        if (Protocol.FRAMING_LENGTH_PREFIXED.equals(framing) && settings.isLengthPrefixedFraming()) {
+            FrameCompressor compressor = null;
+            if (data.has("capabilities")) {
+                for (JsonElement capability : data.getAsJsonArray("capabilities")) {
+                    String name = capability.getAsString();
+                    if (Protocol.CAPABILITY_BINARY.equals(name)) {
+                        capabilities.add(name);
+                    } else if (Protocol.CAPABILITY_DEFLATE.equals(name) && settings.isCompressionEnabled()
+                            && compressor == null) {
+                        compressor = new FrameCompressor(settings.getCompressionLevel(),
+                                settings.getCompressionThresholdBytes(), CompressionMetrics.getInstance());
+                        capabilities.add(name);
+                    }
+                }
+            }
+            boolean cbor = Protocol.ENCODING_CBOR.equals(encoding) && settings.isCborEncoding();
+            codec = new LengthPrefixedFrameCodec(settings.getMaxFrameBytes(), compressor, cbor);
+        }
+
+        Protocol.Response response = Protocol.createHello(message.getRequestId(),
+                Math.min(version, Protocol.VERSION), codec.getFraming(), codec.getEncoding(), capabilities,
+                settings.getMaxFrameBytes());
+        return new Handshake(response, codec);
+    }
+
+    /**
+     * Retorna a descrição do primeiro campo com tipo errado, ou null
+     */
+    private static String validate(JsonObject data) {
+        if (data.has("version") && !isNumber(data.get("version"))) {
+            return "campo 'version' deve ser número";
+        }
+        if (data.has("framing") && !isString(data.get("framing"))) {
+            return "campo 'framing' deve ser texto";
+        }
+        if (data.has("encoding") && !isString(data.get("encoding"))) {
+            return "campo 'encoding' deve ser texto";
+        }
+        if (data.has("capabilities")) {
+            JsonElement capabilities = data.get("capabilities");
+            if (!capabilities.isJsonArray()) {
+                return "campo 'capabilities' deve ser lista";
+            }
+            for (JsonElement capability : capabilities.getAsJsonArray()) {
+                if (!isString(capability)) {
+                    return "campo 'capabilities' deve conter apenas textos";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNumber(JsonElement element) {
+        return element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber();
+    }
+
+    private static boolean isString(JsonElement element) {
+        return element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+    }
+
+    private static boolean contains(ByteBuffer json, byte[] pattern) {
+        int last = json.limit() - pattern.length;
+        outer:
+        for (int i = json.position(); i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (json.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public Protocol.Response getResponse() {
+        return response;
+    }
+
+    /**
+     * Enquadramento a usar depois da resposta
+     */
+    public FrameCodec getCodec() {
+        return codec;
+    }
+}
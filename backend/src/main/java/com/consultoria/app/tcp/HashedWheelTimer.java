@@ -0,0 +1,126 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer de roda (hashed wheel) para milhares de timeouts aproximados.
+ * Agendar e cancelar custam O(1); uma única thread avança a roda a cada
+ * tick e executa os timeouts vencidos do bucket atual. As tarefas devem ser
+ * curtas, pois rodam na thread do timer.
+ */
+public class HashedWheelTimer {
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickMs;
+    private final LinkedList<Timeout>[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick = 0;
+
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickMs = Math.max(1, unit.toMillis(tickDuration));
+        this.wheel = new LinkedList[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new LinkedList<>();
+        }
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Agenda tarefa para daqui a delayMs (arredondado para o próximo tick)
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        Timeout timeout = new Timeout(task, Math.max(1, (delayMs + tickMs - 1) / tickMs));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        while (running) {
+            long deadline = start + (tick + 1) * tickMs;
+            long sleep = deadline - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            transferPending();
+            expireBucket(wheel[(int) (tick % wheel.length)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long target = tick + timeout.ticks;
+            timeout.remainingRounds = timeout.ticks / wheel.length;
+            wheel[(int) (target % wheel.length)].add(timeout);
+        }
+    }
+
+    private void expireBucket(LinkedList<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    log.error("Erro ao executar timeout", e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Timeout agendado; cancelar apenas marca, a remoção ocorre no tick
+     */
+    public static class Timeout {
+        private final Runnable task;
+        private final long ticks;
+        private long remainingRounds;
+        private volatile boolean cancelled = false;
+
+        Timeout(Runnable task, long ticks) {
+            this.task = task;
+            this.ticks = ticks;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
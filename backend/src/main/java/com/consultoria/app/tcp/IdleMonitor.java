@@ -0,0 +1,82 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Detecta conexões ociosas usando um único timeout por conexão no
+ * HashedWheelTimer. O timeout não é reagendado a cada leitura: quando vence,
+ * compara o instante da última leitura e reagenda pelo tempo restante.
+ * Após heartbeatMs sem tráfego o servidor envia um PING; após idleTimeoutMs
+ * a conexão é fechada. Comandos em execução contam como atividade, e o PING
+ * é enviado pelo executor de heartbeat: uma escrita bloqueada não trava a
+ * thread do timer.
+ */
+public class IdleMonitor {
+    private static final Logger log = LoggerFactory.getLogger(IdleMonitor.class);
+
+    private final HashedWheelTimer timer;
+    private final long heartbeatMs;
+    private final long idleTimeoutMs;
+    private final Executor heartbeatExecutor;
+
+    public IdleMonitor(HashedWheelTimer timer, long heartbeatMs, long idleTimeoutMs, Executor heartbeatExecutor) {
+        this.timer = timer;
+        this.heartbeatMs = heartbeatMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.heartbeatExecutor = heartbeatExecutor;
+    }
+
+    /**
+     * Começa a monitorar a conexão; o monitoramento termina quando ela fecha
+     */
+    public void watch(TcpConnection connection) {
+        if (idleTimeoutMs <= 0) {
+            return;
+        }
+        timer.schedule(() -> check(connection, 0, 0), nextDelay(0));
+    }
+
+    /**
+     * @param lastBusyAt última verificação que encontrou comando em execução
+     */
+    private void check(TcpConnection connection, long lastPingAt, long lastBusyAt) {
+        if (!connection.isOpen()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        // No modo sequencial o PONG só é lido depois do comando: execução conta como tráfego
+        long busyAt = connection.getInFlight() > 0 ? now : lastBusyAt;
+        long idle = now - Math.max(connection.getLastActivity(), busyAt);
+
+        if (idle >= idleTimeoutMs) {
+            log.info("Fechando conexão ociosa {} ({}) após {} ms sem tráfego",
+                    connection.getId(), connection.getRemoteAddress(), idle);
+            connection.close();
+            return;
+        }
+
+        long pingAt = lastPingAt;
+        if (heartbeatMs > 0 && idle >= heartbeatMs && lastPingAt < connection.getLastActivity()) {
+            heartbeatExecutor.execute(() -> connection.send(Protocol.createPing()));
+            pingAt = now;
+        }
+
+        long finalPingAt = pingAt;
+        timer.schedule(() -> check(connection, finalPingAt, busyAt), nextDelay(idle));
+    }
+
+    /**
+     * Próxima verificação: no próximo heartbeat ou no timeout, o que vier antes
+     */
+    private long nextDelay(long idle) {
+        long untilTimeout = idleTimeoutMs - idle;
+        if (heartbeatMs > 0 && idle < heartbeatMs) {
+            return Math.min(heartbeatMs - idle, untilTimeout);
+        }
+        return untilTimeout;
+    }
+}
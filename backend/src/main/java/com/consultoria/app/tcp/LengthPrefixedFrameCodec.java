@@ -0,0 +1,197 @@
+package com.consultoria.app.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Enquadramento com prefixo de tamanho, negociado via HELLO.
+ * Formato (inteiros de 4 bytes big-endian):
+ * [tamanho do JSON][tamanho do binário][JSON UTF-8][binário]
+ * O JSON é a mesma Message/Response do modo linha, sem '\n'; o binário
+ * (ex.: conteúdo de arquivo) vai cru, sem base64.
+ * Com a capability "deflate", frames acima do limiar podem ir comprimidos:
+ * [tamanho comprimido | bit 31][tamanho original][deflate do frame completo]
+ * Com "encoding": "cbor" a seção do JSON leva a mesma mensagem em CBOR.
+ */
+public class LengthPrefixedFrameCodec implements FrameCodec {
+    private static final int HEADER_BYTES = 8;
+    private static final int COMPRESSED_FLAG = 0x80000000;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int maxFrameBytes;
+    private final FrameCompressor compressor;
+    private final boolean cbor;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    private byte[] json;
+    private byte[] binary;
+    private int filled;
+    private int originalLength = -1;
+    private long discardRemaining;
+
+    public LengthPrefixedFrameCodec(int maxFrameBytes) {
+        this(maxFrameBytes, null);
+    }
+
+    /**
+     * @param compressor null quando a conexão não negociou "deflate"
+     */
+    public LengthPrefixedFrameCodec(int maxFrameBytes, FrameCompressor compressor) {
+        this(maxFrameBytes, compressor, false);
+    }
+
+    /**
+     * @param cbor mensagens em CBOR em vez de JSON, nos dois sentidos
+     */
+    public LengthPrefixedFrameCodec(int maxFrameBytes, FrameCompressor compressor, boolean cbor) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.compressor = compressor;
+        this.cbor = cbor;
+    }
+
+    @Override
+    public Frame decode(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            if (discardRemaining > 0) {
+                int skip = (int) Math.min(discardRemaining, src.remaining());
+                src.position(src.position() + skip);
+                discardRemaining -= skip;
+                continue;
+            }
+
+            if (json == null && !readHeader(src)) {
+                return null;
+            }
+
+            filled += fill(src, json, filled);
+            if (filled >= json.length) {
+                filled += fill(src, binary, filled - json.length);
+            }
+
+            if (filled == json.length + binary.length) {
+                Frame frame = originalLength >= 0 ? inflate(json, originalLength) : toFrame(json, binary);
+                json = null;
+                binary = null;
+                originalLength = -1;
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lê o cabeçalho e prepara os buffers do frame; false se faltam bytes
+     */
+    private boolean readHeader(ByteBuffer src) throws IOException {
+        while (header.hasRemaining() && src.hasRemaining()) {
+            header.put(src.get());
+        }
+        if (header.hasRemaining()) {
+            return false;
+        }
+        header.flip();
+        int first = header.getInt();
+        int second = header.getInt();
+        header.clear();
+
+        if ((first & COMPRESSED_FLAG) != 0) {
+            int compressedLength = first & ~COMPRESSED_FLAG;
+            if (compressor == null || compressedLength <= 0 || second < HEADER_BYTES) {
+                throw new IOException("Frame comprimido inválido");
+            }
+            if (compressedLength > maxFrameBytes || second > maxFrameBytes + HEADER_BYTES) {
+                discardRemaining = compressedLength;
+                throw new FrameDecoder.FrameTooLongException(maxFrameBytes);
+            }
+            json = new byte[compressedLength];
+            binary = EMPTY;
+            originalLength = second;
+        } else {
+            if (first <= 0 || second < 0) {
+                throw new IOException("Cabeçalho de frame inválido");
+            }
+            if ((long) first + second > maxFrameBytes) {
+                // O tamanho é conhecido: pula o frame inteiro e segue no próximo
+                discardRemaining = (long) first + second;
+                throw new FrameDecoder.FrameTooLongException(maxFrameBytes);
+            }
+            json = new byte[first];
+            binary = second > 0 ? new byte[second] : EMPTY;
+        }
+        filled = 0;
+        return true;
+    }
+
+    /**
+     * Descomprime e separa o frame interno, sem copiar o JSON
+     */
+    private Frame inflate(byte[] compressed, int length) throws IOException {
+        ByteBuffer inner = ByteBuffer.wrap(compressor.inflate(compressed, length));
+        int jsonLength = inner.getInt();
+        int binaryLength = inner.getInt();
+        if (jsonLength <= 0 || binaryLength < 0 || HEADER_BYTES + (long) jsonLength + binaryLength != length) {
+            throw new IOException("Frame comprimido inválido");
+        }
+        ByteBuffer jsonBytes = ByteBuffer.wrap(inner.array(), HEADER_BYTES, jsonLength).slice();
+        byte[] binaryBytes = binaryLength > 0
+                ? Arrays.copyOfRange(inner.array(), HEADER_BYTES + jsonLength, length)
+                : null;
+        return new Frame(jsonBytes, binaryBytes, cbor);
+    }
+
+    private Frame toFrame(byte[] json, byte[] binary) {
+        return new Frame(ByteBuffer.wrap(json), binary.length > 0 ? binary : null, cbor);
+    }
+
+    private static int fill(ByteBuffer src, byte[] target, int offset) {
+        int count = Math.min(target.length - offset, src.remaining());
+        if (count > 0) {
+            src.get(target, offset, count);
+        }
+        return Math.max(count, 0);
+    }
+
+    @Override
+    public byte[] encode(Protocol.Response response) {
+        byte[] jsonBytes = cbor ? CborEncoding.encode(response) : Protocol.encodeJsonBytes(response);
+        byte[] binaryBytes = response.getBinary() != null ? response.getBinary() : EMPTY;
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + jsonBytes.length + binaryBytes.length);
+        frame.putInt(jsonBytes.length);
+        frame.putInt(binaryBytes.length);
+        frame.put(jsonBytes);
+        frame.put(binaryBytes);
+
+        if (compressor == null) {
+            return frame.array();
+        }
+        String command = response.getCommand() != null ? response.getCommand() : response.getType();
+        byte[] compressed = compressor.compress(frame.array(), command);
+        if (compressed == null) {
+            return frame.array();
+        }
+
+        ByteBuffer deflated = ByteBuffer.allocate(HEADER_BYTES + compressed.length);
+        deflated.putInt(compressed.length | COMPRESSED_FLAG);
+        deflated.putInt(frame.capacity());
+        deflated.put(compressed);
+        return deflated.array();
+    }
+
+    @Override
+    public String getFraming() {
+        return Protocol.FRAMING_LENGTH_PREFIXED;
+    }
+
+    @Override
+    public String getEncoding() {
+        return cbor ? Protocol.ENCODING_CBOR : Protocol.ENCODING_JSON;
+    }
+
+    @Override
+    public void release() {
+        if (compressor != null) {
+            compressor.release();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.consultoria.app.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Enquadramento padrão: uma mensagem JSON por linha. Seções binárias de
+ * respostas vão em base64 no campo data.binary.
+ */
+public class LineFrameCodec implements FrameCodec {
+    private final FrameDecoder decoder;
+
+    public LineFrameCodec(int maxFrameBytes) {
+        this.decoder = new FrameDecoder(maxFrameBytes);
+    }
+
+    @Override
+    public Frame decode(ByteBuffer src) throws IOException {
+        ByteBuffer json = decoder.decode(src);
+        return json != null ? new Frame(json, null) : null;
+    }
+
+    @Override
+    public byte[] encode(Protocol.Response response) {
+        if (response.getBinary() != null && response.getData() != null) {
+            response.getData().addProperty("binary", Base64.getEncoder().encodeToString(response.getBinary()));
+        }
+        return Protocol.encodeResponseBytes(response);
+    }
+
+    @Override
+    public String getFraming() {
+        return Protocol.FRAMING_LINE;
+    }
+}
@@ -0,0 +1,49 @@
+package com.consultoria.app.tcp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Junta os pedaços de uma mensagem WebSocket recebida em partes. Os
+ * buffers do container ficam pequenos; o espaço para uma mensagem grande
+ * (upload) só existe enquanto ela chega e cresce até o limite aceito.
+ */
+class MessageAssembler {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final int maxBytes;
+    private byte[] buffer = new byte[0];
+    private int length;
+
+    MessageAssembler(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Copia o pedaço (o container reaproveita o buffer entre pedaços);
+     * false se a mensagem passaria do limite
+     */
+    boolean append(ByteBuffer piece) {
+        int size = piece.remaining();
+        if (size > maxBytes - length) {
+            return false;
+        }
+        if (length + size > buffer.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, buffer.length);
+            while (capacity < length + size) {
+                capacity = capacity > maxBytes / 2 ? maxBytes : capacity * 2;
+            }
+            buffer = Arrays.copyOf(buffer, capacity);
+        }
+        piece.get(buffer, length, size);
+        length += size;
+        return true;
+    }
+
+    /**
+     * Mensagem completa; o assembler não deve ser usado depois
+     */
+    ByteBuffer finish() {
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+}
@@ -0,0 +1,947 @@
+package com.consultoria.app.tcp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modo multiplexed do TCPBridge: um pool fixo de conexões TCP de longa
+ * duração, para um ou mais servidores, carrega o tráfego de todas as sessões
+ * WebSocket. Cada sessão fica presa a uma conexão (assinaturas SUBSCRIBE são
+ * por conexão no servidor), escolhida pelo menor número de pedidos em
+ * andamento. O requestId de cada mensagem é trocado por um id do bridge e
+ * restaurado na resposta; frames EVENT vão para as sessões que assinaram o
+ * tópico. O servidor responde em ordem por conexão, então convém
+ * tcp.server.pipeline.max-in-flight > 1. As escritas de várias sessões na
+ * mesma conexão são agrupadas num único flush; os envios às sessões só
+ * enfileiram, e um navegador lento não segura a leitura da conexão.
+ * <p>
+ * Cada conexão recebe um PING periódico; sem PONG no prazo ela é derrubada,
+ * a menos que tenha pedidos em andamento e continue respondendo: aí só
+ * deixa de receber novas sessões até o PONG chegar.
+ * Quando uma conexão cai, suas sessões migram para outra sem fechar o
+ * WebSocket: os pedidos em andamento recebem erro e as assinaturas são
+ * reenviadas com a mensagem SUBSCRIBE original, como pedidos pendentes.
+ * A sessão só volta a receber EVENTs do tópico após a confirmação do novo
+ * servidor; se ele recusar, a sessão recebe o EVENT {@value #SUBSCRIPTION_LOST}
+ * do tópico e precisa assinar de novo. Assinaturas encerradas no servidor
+ * com a sessão de login ({@value SubscriptionRegistry#SUBSCRIPTION_ENDED})
+ * saem só das sessões WebSocket daquele login.
+ * <p>
+ * As sessões de login ficam na memória do servidor que as criou. O bridge
+ * pede um ticket de retomada no LOGIN/REGISTER (sem repassá-lo ao navegador)
+ * e anota o servidor do login: mensagens com aquele sessionId, de qualquer
+ * aba ou após recarregar a página, seguem para uma conexão desse servidor.
+ * Se a sessão precisar ir para outro (failover ou servidor fora do ar), o
+ * bridge envia AUTH RESUME com o ticket antes de refazer as assinaturas, e
+ * as mensagens da sessão esperam a resposta; o navegador não faz login de novo.
+ */
+public class MultiplexedBridge {
+    private static final Logger log = LoggerFactory.getLogger(MultiplexedBridge.class);
+
+    /** EVENT enviado à sessão cuja assinatura não pôde ser refeita após um failover */
+    public static final String SUBSCRIPTION_LOST = "SUBSCRIPTION_LOST";
+
+    private final List<Backend> backends = new ArrayList<>();
+    private final long healthCheckTimeoutMs;
+    private final long busyTimeoutMs;
+    private final int connectTimeoutMs;
+    private final ScheduledExecutorService healthCheck;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<String, Backend> backendBySession = new ConcurrentHashMap<>();
+    /** sessionId do login -> servidor que o conhece e ticket para retomá-lo em outro */
+    private final Map<String, Login> logins = new ConcurrentHashMap<>();
+    /** Sessão WebSocket -> sessionId do último login que ela usou */
+    private final Map<String, String> loginBySession = new ConcurrentHashMap<>();
+    /** Mensagens das sessões à espera do AUTH RESUME, na ordem de chegada */
+    private final Map<String, Queue<String>> held = new ConcurrentHashMap<>();
+
+    /**
+     * @param busyTimeoutMs sem nenhum frame recebido por este tempo, uma conexão
+     *                      com pedidos em andamento e PING atrasado é derrubada
+     * @param connectTimeoutMs prazo para abrir cada conexão TCP
+     */
+    public MultiplexedBridge(List<InetSocketAddress> addresses, int poolSize, long healthCheckIntervalMs,
+            long healthCheckTimeoutMs, long busyTimeoutMs, int connectTimeoutMs) {
+        for (InetSocketAddress address : addresses) {
+            for (int i = 0; i < Math.max(1, poolSize); i++) {
+                backends.add(new Backend(backends.size(), address));
+            }
+        }
+        this.healthCheckTimeoutMs = healthCheckTimeoutMs;
+        this.busyTimeoutMs = Math.max(busyTimeoutMs, healthCheckTimeoutMs);
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(
+                TcpExecutors.namedThreadFactory("TCP-Bridge-Health"));
+        healthCheck.scheduleWithFixedDelay(this::checkHealth,
+                healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Associa a sessão à conexão com menos pedidos em andamento, conectando se preciso
+     */
+    public void open(WebSocketSession session) throws IOException {
+        Backend chosen = choose(null, null);
+        if (chosen == null) {
+            throw new IOException("Nenhum servidor TCP disponível");
+        }
+        chosen.sessions.put(session.getId(), session);
+        backendBySession.put(session.getId(), chosen);
+    }
+
+    /**
+     * Encaminha a mensagem do navegador com o requestId do bridge
+     */
+    public void forward(WebSocketSession session, String payload) {
+        // Sessão sendo retomada em outro servidor: a mensagem espera o RESUME
+        if (held.computeIfPresent(session.getId(), (id, queue) -> {
+            queue.add(payload);
+            return queue;
+        }) != null) {
+            return;
+        }
+        Backend backend = backendBySession.get(session.getId());
+        if (backend == null) {
+            return;
+        }
+
+        JsonObject message;
+        try {
+            message = JsonParser.parseString(payload).getAsJsonObject();
+        } catch (RuntimeException e) {
+            sendText(session, Protocol.createError("unknown", "Mensagem inválida"));
+            return;
+        }
+        JsonElement requestId = message.get("requestId");
+        String originalId = requestId != null && !requestId.isJsonNull() ? requestId.getAsString() : null;
+        String type = message.has("type") ? message.get("type").getAsString() : null;
+        String topic = topicOf(message);
+
+        String loginId = sessionIdOf(message);
+        if (loginId != null) {
+            loginBySession.put(session.getId(), loginId);
+            Login login = logins.get(loginId);
+            if (login != null && !login.server.equals(backend.name)) {
+                backend = follow(session, backend, loginId, login);
+                if (backend == null) {
+                    forward(session, payload);
+                    return;
+                }
+            }
+        }
+
+        // Outra sessão desta conexão ainda assina o tópico: responde sem cancelar no servidor
+        if (Protocol.UNSUBSCRIBE.equals(type) && topic != null && !backend.removeSubscriber(topic, session.getId())) {
+            JsonObject data = new JsonObject();
+            data.addProperty("topic", topic);
+            sendText(session, Protocol.createSuccess(originalId, "Assinatura cancelada", data));
+            return;
+        }
+
+        // Guarda a mensagem original para refazer a assinatura após um failover
+        JsonObject subscribe = Protocol.SUBSCRIBE.equals(type) && topic != null ? message.deepCopy() : null;
+        Kind kind = Kind.COMMAND;
+        if (isAuth(message, "LOGIN") || isAuth(message, "REGISTER")) {
+            // Ticket para retomar o login em outro servidor; fica só no bridge
+            message.getAsJsonObject("data").addProperty("resumeTicket", true);
+            kind = Kind.LOGIN;
+        } else if (isAuth(message, "LOGOUT")) {
+            kind = Kind.LOGOUT;
+        }
+        String bridgeId = "m" + sequence.incrementAndGet();
+        Pending entry = new Pending(session, originalId, topic, subscribe, backend, kind, loginId, null);
+        pending.put(bridgeId, entry);
+        backend.outstanding.incrementAndGet();
+        message.addProperty("requestId", bridgeId);
+        try {
+            backend.write(message.toString());
+        } catch (IOException e) {
+            complete(bridgeId, entry);
+            log.warn("Falha ao encaminhar para conexão {}: {}", backend.index, e.getMessage());
+            sendText(session, Protocol.createError(originalId, "Servidor TCP indisponível"));
+        }
+    }
+
+    /**
+     * Remove a sessão; tópicos que só ela assinava são cancelados no servidor
+     */
+    public void close(WebSocketSession session) {
+        Backend backend = backendBySession.remove(session.getId());
+        held.remove(session.getId());
+        loginBySession.remove(session.getId());
+        dropPending(session.getId());
+        if (backend == null) {
+            return;
+        }
+        backend.sessions.remove(session.getId());
+        backend.takeTopics(session.getId());
+    }
+
+    public void shutdown() {
+        healthCheck.shutdownNow();
+        for (Backend backend : backends) {
+            backend.disconnect();
+        }
+    }
+
+    /**
+     * Leva a sessão para o servidor do seu login. Se ele estiver fora, o
+     * login é retomado na conexão atual e devolve null: as mensagens da
+     * sessão esperam o RESUME.
+     */
+    private Backend follow(WebSocketSession session, Backend current, String loginId, Login login) {
+        Backend home = choose(null, login.server);
+        if (home != null && home.name.equals(login.server)) {
+            if (backendBySession.replace(session.getId(), current, home)) {
+                current.sessions.remove(session.getId());
+                home.sessions.put(session.getId(), session);
+                home.resubscribe(session, current.takeTopics(session.getId()));
+                log.debug("Sessão {} levada ao servidor do seu login ({})", session.getId(), home.name);
+            }
+            return backendBySession.get(session.getId());
+        }
+        if (login.ticket == null) {
+            return current;
+        }
+        current.resume(session, loginId, login, new HashMap<>());
+        return null;
+    }
+
+    /**
+     * Conexão saudável com menos pedidos em andamento (desempate: menos
+     * sessões); conexões com PING atrasado só se não houver outra. Com
+     * preferred, conexões daquele servidor vêm antes (o servidor do login).
+     * Servidores que recusam a conexão ficam fora até o próximo health check.
+     */
+    private Backend choose(Backend excluded, String preferred) {
+        List<Backend> candidates = new ArrayList<>();
+        for (Backend backend : backends) {
+            if (backend != excluded && backend.healthy) {
+                candidates.add(backend);
+            }
+        }
+        candidates.sort(Comparator.comparing((Backend backend) -> !backend.name.equals(preferred))
+                .thenComparing(backend -> backend.busy)
+                .thenComparingInt(backend -> backend.outstanding.get())
+                .thenComparingInt(backend -> backend.sessions.size()));
+        for (Backend backend : candidates) {
+            try {
+                backend.connect();
+                return backend;
+            } catch (IOException e) {
+                backend.healthy = false;
+                log.warn("Servidor TCP {} indisponível: {}", backend.name, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * PING em cada conexão aberta; sem PONG no prazo a conexão é derrubada
+     * e suas sessões migram. Com pedidos em andamento o PING pode esperar
+     * atrás de comandos longos: enquanto chegar algum frame dentro de
+     * busyTimeoutMs a conexão só sai do rodízio. Servidores fora do ar são
+     * testados de novo.
+     */
+    private void checkHealth() {
+        long now = System.currentTimeMillis();
+        logins.values().removeIf(login -> login.expiresAt < now);
+        for (Backend backend : backends) {
+            try {
+                if (!backend.healthy) {
+                    // Em drain a conexão continua aberta até o servidor fechá-la
+                    if (!backend.isConnected()) {
+                        backend.connect();
+                        backend.healthy = true;
+                        log.info("Servidor TCP {} disponível novamente (conexão {})", backend.name, backend.index);
+                    }
+                    continue;
+                }
+                if (!backend.isConnected()) {
+                    continue;
+                }
+                long sentAt = backend.pingSentAt;
+                if (sentAt > 0 && now - sentAt > healthCheckTimeoutMs) {
+                    // A última resposta acabou de chegar: o PONG vem logo atrás dela
+                    boolean settling = backend.busy && now - backend.lastReadAt <= healthCheckTimeoutMs;
+                    if ((backend.outstanding.get() > 0 && now - backend.lastReadAt <= busyTimeoutMs) || settling) {
+                        if (!backend.busy) {
+                            log.info("Conexão multiplexada {} ocupada (PONG atrasado há {}ms); fora do rodízio",
+                                    backend.index, now - sentAt);
+                            backend.busy = true;
+                        }
+                        continue;
+                    }
+                    log.warn("Conexão multiplexada {} sem PONG há {}ms; derrubando", backend.index, now - sentAt);
+                    backend.disconnect();
+                    continue;
+                }
+                if (sentAt == 0) {
+                    String pingId = "h" + sequence.incrementAndGet();
+                    backend.pingId = pingId;
+                    backend.pingSentAt = now;
+                    backend.write("{\"type\":\"PING\",\"requestId\":\"" + pingId + "\"}");
+                }
+            } catch (IOException e) {
+                log.debug("Health check da conexão {} falhou: {}", backend.index, e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Erro no health check da conexão {}", backend.index, e);
+            }
+        }
+    }
+
+    /**
+     * Encerra a pendência uma única vez, liberando a contagem da conexão
+     */
+    private boolean complete(String bridgeId, Pending entry) {
+        if (pending.remove(bridgeId, entry)) {
+            entry.backend.outstanding.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private List<Pending> dropPending(String sessionId) {
+        List<Pending> dropped = new ArrayList<>();
+        for (Map.Entry<String, Pending> item : pending.entrySet()) {
+            Pending entry = item.getValue();
+            if (entry.session.getId().equals(sessionId) && complete(item.getKey(), entry)) {
+                dropped.add(entry);
+            }
+        }
+        return dropped;
+    }
+
+    private static String topicOf(JsonObject message) {
+        JsonElement data = message.get("data");
+        if (data == null || !data.isJsonObject() || !data.getAsJsonObject().has("topic")) {
+            return null;
+        }
+        return data.getAsJsonObject().get("topic").getAsString();
+    }
+
+    private static String sessionIdOf(JsonObject message) {
+        JsonElement sessionId = message.get("sessionId");
+        return sessionId != null && !sessionId.isJsonNull() ? sessionId.getAsString() : null;
+    }
+
+    private static boolean isAuth(JsonObject message, String action) {
+        JsonElement type = message.get("type");
+        JsonElement data = message.get("data");
+        if (type == null || !"AUTH".equals(type.getAsString()) || data == null || !data.isJsonObject()) {
+            return false;
+        }
+        JsonElement value = data.getAsJsonObject().get("action");
+        return value != null && value.isJsonPrimitive() && action.equalsIgnoreCase(value.getAsString());
+    }
+
+    /**
+     * Avisa a sessão que a assinatura do tópico não foi refeita na nova conexão
+     */
+    private static void subscriptionLost(WebSocketSession session, String topic) {
+        JsonObject data = new JsonObject();
+        data.addProperty("reason", "Assinatura não refeita após troca de servidor; assine novamente");
+        sendText(session, Protocol.createEvent(topic, SUBSCRIPTION_LOST, data));
+    }
+
+    /**
+     * Encerra a espera do RESUME: as mensagens retidas seguem na ordem
+     */
+    private void release(WebSocketSession session) {
+        Queue<String> queue = held.remove(session.getId());
+        if (queue != null) {
+            for (String payload : queue) {
+                forward(session, payload);
+            }
+        }
+    }
+
+    static void sendText(WebSocketSession session, Protocol.Response response) {
+        String json = Protocol.encodeResponse(response);
+        sendText(session, json.substring(0, json.length() - 1));
+    }
+
+    /**
+     * A sessão vem envolvida pelo TCPBridge num {@link WebSocketSender}: o
+     * envio só enfileira, sem bloquear a thread de leitura nem o reactor
+     */
+    static void sendText(WebSocketSession session, String json) {
+        try {
+            if (session.isOpen()) {
+                session.sendMessage(new TextMessage(json));
+            }
+        } catch (IOException | IllegalStateException | SessionLimitExceededException e) {
+            log.debug("Erro ao enviar para WebSocket {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private enum Kind {
+        COMMAND,
+        /** LOGIN/REGISTER: a resposta traz o ticket, que não vai ao navegador */
+        LOGIN,
+        LOGOUT,
+        /** SUBSCRIBE reenviado pelo bridge após failover: a resposta não vai ao navegador */
+        REPLAY,
+        /** AUTH RESUME enviado pelo bridge; as assinaturas são refeitas depois dele */
+        RESUME
+    }
+
+    private static class Pending {
+        final WebSocketSession session;
+        final String originalId;
+        final String topic;
+        /** Mensagem SUBSCRIBE original, ou null para outros comandos */
+        final JsonObject subscribe;
+        final Backend backend;
+        final Kind kind;
+        /** sessionId do login usado na mensagem */
+        final String loginId;
+        /** RESUME: assinaturas (tópico -> SUBSCRIBE) a refazer depois dele */
+        final Map<String, JsonObject> topics;
+
+        Pending(WebSocketSession session, String originalId, String topic, JsonObject subscribe, Backend backend,
+                Kind kind, String loginId, Map<String, JsonObject> topics) {
+            this.session = session;
+            this.originalId = originalId;
+            this.topic = topic;
+            this.subscribe = subscribe;
+            this.backend = backend;
+            this.kind = kind;
+            this.loginId = loginId;
+            this.topics = topics;
+        }
+    }
+
+    /**
+     * Login visto passar pelo bridge
+     */
+    private static class Login {
+        /** Servidor (host:porta) que conhece a sessão */
+        volatile String server;
+        /** Ticket para AUTH RESUME, ou null se o servidor não o enviou */
+        final String ticket;
+        final long expiresAt;
+
+        Login(String server, String ticket, long expiresAt) {
+            this.server = server;
+            this.ticket = ticket;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Uma conexão TCP compartilhada e sua thread de leitura
+     */
+    private class Backend {
+        final int index;
+        final InetSocketAddress address;
+        /** host:porta para os logs */
+        final String name;
+        final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+        /** Tópico -> sessões desta conexão que o assinaram, com a mensagem SUBSCRIBE de cada uma */
+        final Map<String, Map<String, JsonObject>> topics = new ConcurrentHashMap<>();
+        /** Pedidos enviados ainda sem a resposta final */
+        final AtomicInteger outstanding = new AtomicInteger();
+        /** false após falha de conexão ou aviso de drain: não recebe novas sessões */
+        volatile boolean healthy = true;
+        /** PING atrasado com pedidos em andamento: fica fora do rodízio até o PONG */
+        volatile boolean busy;
+        volatile String pingId;
+        volatile long pingSentAt;
+        /** Último frame recebido, de qualquer tipo */
+        volatile long lastReadAt;
+        /** Linhas aguardando escrita, na ordem de chegada */
+        private final Queue<String> outgoing = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushing = new AtomicBoolean();
+        private Socket socket;
+        private Writer out;
+
+        Backend(int index, InetSocketAddress address) {
+            this.index = index;
+            this.address = address;
+            this.name = address.getHostString() + ":" + address.getPort();
+        }
+
+        synchronized boolean isConnected() {
+            return socket != null && !socket.isClosed();
+        }
+
+        synchronized void connect() throws IOException {
+            if (isConnected()) {
+                return;
+            }
+            // Com prazo: connect() roda na thread do container e na de leitura que migra as sessões
+            Socket connected = new Socket();
+            try {
+                connected.connect(new InetSocketAddress(address.getHostString(), address.getPort()), connectTimeoutMs);
+            } catch (IOException e) {
+                connected.close();
+                throw e;
+            }
+            socket = connected;
+            out = new BufferedWriter(new OutputStreamWriter(connected.getOutputStream(), StandardCharsets.UTF_8));
+            pingSentAt = 0;
+            busy = false;
+            lastReadAt = System.currentTimeMillis();
+            Thread reader = new Thread(() -> read(connected), "TCP-Bridge-Mux-" + index);
+            reader.setDaemon(true);
+            reader.start();
+            log.info("Conexão multiplexada {} aberta para {}", index, name);
+        }
+
+        /**
+         * Enfileira a linha; quem conseguir o dreno escreve tudo o que estiver
+         * na fila e faz um só flush, os demais voltam sem esperar o socket
+         */
+        void write(String json) throws IOException {
+            synchronized (this) {
+                if (out == null) {
+                    throw new IOException("Conexão " + index + " fechada");
+                }
+            }
+            outgoing.add(json);
+            while (!outgoing.isEmpty() && flushing.compareAndSet(false, true)) {
+                try {
+                    drain();
+                } finally {
+                    flushing.set(false);
+                }
+            }
+        }
+
+        private synchronized void drain() {
+            String line;
+            try {
+                while ((line = outgoing.poll()) != null) {
+                    if (out == null) {
+                        throw new IOException("Conexão " + index + " fechada");
+                    }
+                    out.write(line);
+                    out.write('\n');
+                }
+                if (out != null) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // A thread de leitura percebe a queda e migra as sessões
+                log.warn("Falha ao escrever na conexão multiplexada {}: {}", index, e.getMessage());
+                outgoing.clear();
+                disconnect();
+            }
+        }
+
+        synchronized void disconnect() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    log.debug("Erro ao fechar conexão multiplexada {}: {}", index, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Registra a sessão como assinante; true se é a primeira do tópico
+         */
+        boolean addSubscriber(String topic, String sessionId, JsonObject subscribe) {
+            boolean[] first = { false };
+            topics.compute(topic, (key, subscribers) -> {
+                if (subscribers == null) {
+                    subscribers = new ConcurrentHashMap<>();
+                    first[0] = true;
+                }
+                subscribers.put(sessionId, subscribe);
+                return subscribers;
+            });
+            return first[0];
+        }
+
+        /**
+         * Remove a sessão dos assinantes; true se era a última do tópico
+         */
+        boolean removeSubscriber(String topic, String sessionId) {
+            boolean[] last = { false };
+            topics.computeIfPresent(topic, (key, subscribers) -> {
+                if (subscribers.remove(sessionId) == null) {
+                    return subscribers;
+                }
+                last[0] = subscribers.isEmpty();
+                return last[0] ? null : subscribers;
+            });
+            return last[0];
+        }
+
+        private void read(Socket connected) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(connected.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lastReadAt = System.currentTimeMillis();
+                    route(line);
+                }
+            } catch (IOException e) {
+                log.warn("Conexão multiplexada {} perdida: {}", index, e.getMessage());
+            } finally {
+                lost(connected);
+            }
+        }
+
+        private void route(String line) throws IOException {
+            JsonObject frame;
+            try {
+                frame = JsonParser.parseString(line).getAsJsonObject();
+            } catch (RuntimeException e) {
+                log.warn("Frame inválido na conexão multiplexada {}", index);
+                return;
+            }
+            String type = frame.has("type") ? frame.get("type").getAsString() : null;
+            JsonElement requestId = frame.get("requestId");
+
+            if (Protocol.PING.equals(type)) {
+                // Heartbeat da conexão compartilhada é respondido pelo próprio bridge
+                write("{\"type\":\"PONG\"}");
+                return;
+            }
+            if (Protocol.PONG.equals(type) && requestId != null && requestId.getAsString().equals(pingId)) {
+                pingSentAt = 0;
+                busy = false;
+                return;
+            }
+            if (Protocol.EVENT.equals(type)) {
+                if (frame.has("message")
+                        && SubscriptionRegistry.SUBSCRIPTION_ENDED.equals(frame.get("message").getAsString())) {
+                    endSubscriptions(frame, line);
+                    return;
+                }
+                Map<String, JsonObject> subscribers = topics.get(topicOf(frame));
+                if (subscribers != null) {
+                    for (String sessionId : subscribers.keySet()) {
+                        WebSocketSession session = sessions.get(sessionId);
+                        if (session != null) {
+                            sendText(session, line);
+                        }
+                    }
+                }
+                return;
+            }
+            if (requestId == null || requestId.isJsonNull()) {
+                if (Protocol.SERVER_DRAINING.equals(type) && hasOtherHealthy()) {
+                    // As sessões migram quando o servidor fechar; o navegador não precisa reconectar
+                    log.info("Servidor {} em drain; conexão {} não recebe novas sessões", name, index);
+                    healthy = false;
+                    return;
+                }
+                // Avisos da conexão (ex.: SERVER_DRAINING) valem para todas as sessões
+                for (WebSocketSession session : sessions.values()) {
+                    sendText(session, line);
+                }
+                return;
+            }
+
+            String bridgeId = requestId.getAsString();
+            boolean partial = frame.has("last") && !frame.get("last").getAsBoolean();
+            Pending entry = pending.get(bridgeId);
+            if (entry == null || (!partial && !complete(bridgeId, entry))) {
+                log.debug("Resposta sem destino na conexão {}: {}", index, bridgeId);
+                return;
+            }
+            boolean success = frame.has("success") && frame.get("success").getAsBoolean();
+            if (entry.subscribe != null && success) {
+                addSubscriber(entry.topic, entry.session.getId(), entry.subscribe);
+            }
+            switch (entry.kind) {
+                case REPLAY:
+                    if (!success) {
+                        log.warn("Servidor {} recusou refazer a assinatura {}: {}", name, entry.topic,
+                                frame.has("message") ? frame.get("message").getAsString() : "");
+                        subscriptionLost(entry.session, entry.topic);
+                    }
+                    return;
+                case RESUME:
+                    resumed(entry, success);
+                    return;
+                case LOGIN:
+                    if (success) {
+                        learnLogin(entry.session, frame);
+                    }
+                    break;
+                case LOGOUT:
+                    if (success && entry.loginId != null) {
+                        logins.remove(entry.loginId);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (entry.originalId != null) {
+                frame.addProperty("requestId", entry.originalId);
+            } else {
+                frame.remove("requestId");
+            }
+            sendText(entry.session, frame.toString());
+        }
+
+        /**
+         * Anota o servidor do login e tira o ticket da resposta ao navegador
+         */
+        private void learnLogin(WebSocketSession session, JsonObject frame) {
+            JsonElement value = frame.get("data");
+            if (value == null || !value.isJsonObject()) {
+                return;
+            }
+            JsonObject data = value.getAsJsonObject();
+            JsonElement sessionId = data.get("sessionId");
+            JsonElement ticket = data.remove("resumeTicket");
+            JsonElement expiresAt = data.remove("resumeTicketExpiresAt");
+            if (sessionId == null || sessionId.isJsonNull()) {
+                return;
+            }
+            logins.put(sessionId.getAsString(), new Login(name,
+                    ticket != null && !ticket.isJsonNull() ? ticket.getAsString() : null,
+                    expiresAt != null ? expiresAt.getAsLong() : Long.MAX_VALUE));
+            loginBySession.put(session.getId(), sessionId.getAsString());
+        }
+
+        /**
+         * Resposta do AUTH RESUME: o login passa a morar neste servidor e as
+         * assinaturas são refeitas; recusado, a sessão é avisada de cada uma.
+         * As mensagens retidas seguem em qualquer caso.
+         */
+        private void resumed(Pending entry, boolean success) {
+            Login login = logins.get(entry.loginId);
+            if (success) {
+                if (login != null) {
+                    login.server = name;
+                }
+                log.info("Login da sessão {} retomado no servidor {}", entry.session.getId(), name);
+                resubscribe(entry.session, entry.topics);
+            } else {
+                log.warn("Servidor {} recusou retomar o login da sessão {}", name, entry.session.getId());
+                logins.remove(entry.loginId);
+                for (String topic : entry.topics.keySet()) {
+                    subscriptionLost(entry.session, topic);
+                }
+            }
+            release(entry.session);
+        }
+
+        /**
+         * A sessão de login foi encerrada no servidor: saem só as sessões
+         * WebSocket que assinaram o tópico com aquele sessionId, e só elas
+         * recebem o aviso. O servidor já cancelou o tópico se eram as últimas.
+         */
+        private void endSubscriptions(JsonObject frame, String line) {
+            String topic = topicOf(frame);
+            if (topic == null) {
+                return;
+            }
+            JsonElement ended = frame.getAsJsonObject("data").get("sessionId");
+            Map<String, JsonObject> subscribers = topics.get(topic);
+            if (subscribers == null || ended == null) {
+                return;
+            }
+            for (Map.Entry<String, JsonObject> subscriber : subscribers.entrySet()) {
+                JsonElement sessionId = subscriber.getValue().get("sessionId");
+                if (sessionId == null || !sessionId.equals(ended)) {
+                    continue;
+                }
+                removeSubscriber(topic, subscriber.getKey());
+                WebSocketSession session = sessions.get(subscriber.getKey());
+                if (session != null) {
+                    sendText(session, line);
+                }
+            }
+        }
+
+        private boolean hasOtherHealthy() {
+            for (Backend backend : backends) {
+                if (backend != this && backend.healthy) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Sem a conexão as assinaturas e respostas pendentes se perdem: as
+         * sessões migram para outra conexão, ou são fechadas se não houver
+         * nenhuma disponível
+         */
+        private void lost(Socket connected) {
+            synchronized (this) {
+                if (socket != connected) {
+                    return;
+                }
+                socket = null;
+                out = null;
+                outgoing.clear();
+            }
+            healthy = false;
+            Map<String, Map<String, JsonObject>> lostTopics = new HashMap<>(topics);
+            topics.clear();
+            List<WebSocketSession> orphans = new ArrayList<>(sessions.values());
+            sessions.clear();
+
+            int migrated = 0;
+            for (WebSocketSession session : orphans) {
+                Map<String, JsonObject> sessionTopics = new HashMap<>();
+                for (Map.Entry<String, Map<String, JsonObject>> topic : lostTopics.entrySet()) {
+                    JsonObject subscribe = topic.getValue().get(session.getId());
+                    if (subscribe != null) {
+                        sessionTopics.put(topic.getKey(), subscribe);
+                    }
+                }
+                for (Pending entry : dropPending(session.getId())) {
+                    if (entry.kind == Kind.REPLAY) {
+                        // Assinatura ainda não confirmada aqui: vai junto para a próxima conexão
+                        sessionTopics.put(entry.topic, entry.subscribe);
+                    } else if (entry.kind == Kind.RESUME) {
+                        // RESUME sem resposta: é refeito na próxima conexão, as mensagens seguem retidas
+                        sessionTopics.putAll(entry.topics);
+                    } else if (entry.originalId != null) {
+                        sendText(session, Protocol.createError(entry.originalId,
+                                "Conexão com o servidor TCP perdida, tente novamente"));
+                    }
+                }
+                String loginId = loginBySession.get(session.getId());
+                Login login = loginId != null ? logins.get(loginId) : null;
+                Backend target = choose(this, login != null ? login.server : null);
+                if (target == null || !backendBySession.replace(session.getId(), this, target)) {
+                    backendBySession.remove(session.getId(), this);
+                    held.remove(session.getId());
+                    try {
+                        session.close(CloseStatus.SERVICE_RESTARTED);
+                    } catch (IOException e) {
+                        log.debug("Erro ao fechar WebSocket {}: {}", session.getId(), e.getMessage());
+                    }
+                    continue;
+                }
+                target.sessions.put(session.getId(), session);
+                if (login != null && login.ticket != null && !login.server.equals(target.name)) {
+                    // Outro servidor não conhece o login: retoma antes de refazer as assinaturas
+                    target.resume(session, loginId, login, sessionTopics);
+                } else {
+                    target.resubscribe(session, sessionTopics);
+                    release(session);
+                }
+                migrated++;
+            }
+            if (!orphans.isEmpty()) {
+                log.warn("Conexão multiplexada {} perdida: {} de {} sessões migradas",
+                        index, migrated, orphans.size());
+            }
+        }
+
+        /**
+         * Envia AUTH RESUME com o ticket do login; as mensagens da sessão
+         * ficam retidas até a resposta, e as assinaturas são refeitas depois
+         */
+        void resume(WebSocketSession session, String loginId, Login login, Map<String, JsonObject> sessionTopics) {
+            held.putIfAbsent(session.getId(), new ConcurrentLinkedQueue<>());
+            String bridgeId = "m" + sequence.incrementAndGet();
+            Pending entry = new Pending(session, null, null, null, this, Kind.RESUME, loginId, sessionTopics);
+            pending.put(bridgeId, entry);
+            outstanding.incrementAndGet();
+            JsonObject data = new JsonObject();
+            data.addProperty("action", "RESUME");
+            data.addProperty("ticket", login.ticket);
+            JsonObject message = new JsonObject();
+            message.addProperty("type", "AUTH");
+            message.addProperty("requestId", bridgeId);
+            message.add("data", data);
+            try {
+                write(message.toString());
+            } catch (IOException e) {
+                log.debug("Falha ao retomar o login da sessão {}: {}", session.getId(), e.getMessage());
+                if (complete(bridgeId, entry)) {
+                    resumed(entry, false);
+                }
+            }
+        }
+
+        /**
+         * Tira a sessão dos assinantes desta conexão, cancelando no servidor
+         * os tópicos que ficaram sem ninguém; devolve tópico -> SUBSCRIBE
+         */
+        Map<String, JsonObject> takeTopics(String sessionId) {
+            Map<String, JsonObject> taken = new HashMap<>();
+            for (Map.Entry<String, Map<String, JsonObject>> topic : topics.entrySet()) {
+                JsonObject subscribe = topic.getValue().get(sessionId);
+                if (subscribe == null) {
+                    continue;
+                }
+                taken.put(topic.getKey(), subscribe);
+                if (removeSubscriber(topic.getKey(), sessionId)) {
+                    JsonObject data = new JsonObject();
+                    data.addProperty("topic", topic.getKey());
+                    JsonObject unsubscribe = new JsonObject();
+                    unsubscribe.addProperty("type", Protocol.UNSUBSCRIBE);
+                    // requestId sem pendência: a resposta é descartada, não vai para as sessões
+                    unsubscribe.addProperty("requestId", "m" + sequence.incrementAndGet());
+                    unsubscribe.add("data", data);
+                    try {
+                        write(unsubscribe.toString());
+                    } catch (IOException e) {
+                        log.debug("Falha ao cancelar tópico {}: {}", topic.getKey(), e.getMessage());
+                    }
+                }
+            }
+            return taken;
+        }
+
+        /**
+         * Reenvia nesta conexão as assinaturas (tópico -> SUBSCRIBE) que a
+         * sessão tinha em outra; cada uma só conta quando o servidor confirmar (route)
+         */
+        private void resubscribe(WebSocketSession session, Map<String, JsonObject> sessionTopics) {
+            for (Map.Entry<String, JsonObject> topic : sessionTopics.entrySet()) {
+                JsonObject subscribe = topic.getValue();
+                String bridgeId = "m" + sequence.incrementAndGet();
+                Pending entry = new Pending(session, null, topic.getKey(), subscribe, this, Kind.REPLAY, null, null);
+                pending.put(bridgeId, entry);
+                outstanding.incrementAndGet();
+                JsonObject replay = subscribe.deepCopy();
+                replay.addProperty("requestId", bridgeId);
+                try {
+                    write(replay.toString());
+                } catch (IOException e) {
+                    log.debug("Falha ao refazer assinatura {}: {}", topic.getKey(), e.getMessage());
+                    if (complete(bridgeId, entry)) {
+                        subscriptionLost(entry.session, entry.topic);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.Protocol.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Estado de uma conexão no modo NIO. Acumula bytes no FrameDecoder até
+ * formar frames completos (linhas JSON) e entrega apenas frames completos
+ * ao pool de workers. Até maxInFlight comandos rodam ao mesmo tempo; cada resposta é
+ * escrita assim que fica pronta (fora de ordem, correlacionada pelo
+ * requestId). A leitura é suspensa enquanto houver backlog de comandos ou a
+ * fila de saída estiver acima do high watermark. Todos os métodos rodam na
+ * thread do reactor, exceto o trecho executado no worker e {@link #close()}.
+ */
+public class NioConnection implements TcpConnection, NioHandler {
+    private static final Logger log = LoggerFactory.getLogger(NioConnection.class);
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final String id;
+    private final SocketChannel channel;
+    private final NioReactor reactor;
+    private final CommandDispatcher dispatcher;
+    private final ConnectionRegistry registry;
+    private final IdleMonitor idleMonitor;
+    private final Executor workers;
+    private final String remoteAddress;
+    private final int maxInFlight;
+    private final long connectedAt = System.currentTimeMillis();
+    private volatile long lastActivity = connectedAt;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ConnectionSettings settings;
+    private volatile FrameCodec codec;
+    private boolean firstFrame = true;
+    private final Deque<FrameCodec.Frame> pendingFrames = new ArrayDeque<>();
+    private final OutboundQueue outbound;
+
+    private SelectionKey key;
+    private volatile int inFlight = 0;
+    private volatile boolean closed = false;
+
+    public NioConnection(SocketChannel channel, NioReactor reactor, CommandDispatcher dispatcher,
+            ConnectionRegistry registry, IdleMonitor idleMonitor, ConnectionSettings settings,
+            Executor workers) {
+        this.id = registry.nextId();
+        this.channel = channel;
+        this.reactor = reactor;
+        this.dispatcher = dispatcher;
+        this.registry = registry;
+        this.idleMonitor = idleMonitor;
+        this.workers = workers;
+        this.maxInFlight = Math.max(1, settings.getMaxInFlight());
+        this.outbound = new OutboundQueue(settings);
+        this.settings = settings;
+        this.codec = new LineFrameCodec(settings.getMaxFrameBytes());
+        this.remoteAddress = String.valueOf(channel.socket().getInetAddress());
+    }
+
+    /**
+     * Registra canal no selector do reactor
+     */
+    void register() throws IOException {
+        key = channel.register(reactor.getSelector(), SelectionKey.OP_READ, this);
+        registry.register(this);
+        idleMonitor.watch(this);
+        log.info("Cliente conectado: {}", remoteAddress);
+    }
+
+    @Override
+    public void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                closeNow();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                try {
+                    FrameCodec.Frame frame = codec.decode(readBuffer);
+                    if (frame == null) {
+                        continue;
+                    }
+                    if (firstFrame) {
+                        firstFrame = false;
+                        if (negotiate(frame)) {
+                            continue;
+                        }
+                    }
+                    pendingFrames.add(frame);
+                } catch (FrameDecoder.FrameTooLongException e) {
+                    log.warn("Frame de {} ({}) rejeitado: {}", id, remoteAddress, e.getMessage());
+                    write(ByteBuffer.wrap(codec.encode(Protocol.createError("unknown", e.getMessage()))));
+                }
+            }
+            readBuffer.clear();
+
+            dispatchNext();
+        } catch (IOException e) {
+            log.debug("Erro de leitura em {}: {}", remoteAddress, e.getMessage());
+            closeNow();
+        } catch (RuntimeException e) {
+            // Frame malformado não pode interromper o loop do reactor
+            log.error("Erro inesperado na conexão {} ({})", id, remoteAddress, e);
+            closeNow();
+        }
+    }
+
+    /**
+     * Trata HELLO no primeiro frame: responde no enquadramento atual e os
+     * bytes seguintes do buffer já são lidos no negociado
+     */
+    private boolean negotiate(FrameCodec.Frame frame) {
+        Handshake handshake = Handshake.accept(frame, codec, settings);
+        if (handshake == null) {
+            return false;
+        }
+        write(ByteBuffer.wrap(codec.encode(handshake.getResponse())));
+        codec = handshake.getCodec();
+        log.info("Conexão {} negociou enquadramento {} ({})", id, codec.getFraming(), codec.getEncoding());
+        return true;
+    }
+
+    /**
+     * Envia frames pendentes ao pool de workers até o limite de comandos em
+     * andamento. Com backlog cheio ou fila de saída acima do high watermark
+     * nada novo é despachado e a leitura do socket é suspensa.
+     */
+    private void dispatchNext() {
+        while (!closed && inFlight < maxInFlight && !pendingFrames.isEmpty() && outbound.isWritable()) {
+            FrameCodec.Frame next = pendingFrames.poll();
+            // Permissão global reservada aqui: a fila dos workers não cresce além do limite
+            if (!dispatcher.tryAdmit()) {
+                Response busy = dispatcher.reject(next, this);
+                if (busy != null) {
+                    write(ByteBuffer.wrap(codec.encode(busy)));
+                }
+                continue;
+            }
+            inFlight++;
+            try {
+                workers.execute(() -> process(next));
+            } catch (RejectedExecutionException e) {
+                // Pool encerrado: o frame não roda, a permissão e a vaga voltam
+                inFlight--;
+                log.warn("Comando de {} ({}) recusado pelo pool de workers", id, remoteAddress);
+                write(ByteBuffer.wrap(codec.encode(dispatcher.abandon(next))));
+            }
+        }
+        updateReadInterest();
+    }
+
+    /**
+     * Roda no worker. A vaga em inFlight volta no reactor mesmo se a
+     * codificação da resposta falhar; nesse caso o cliente recebe um erro.
+     */
+    private void process(FrameCodec.Frame frame) {
+        byte[] encoded = null;
+        try {
+            Response response = dispatcher.dispatchAdmitted(frame, this);
+            encoded = response != null ? codec.encode(response) : null;
+        } catch (RuntimeException e) {
+            log.error("Erro ao codificar resposta na conexão {} ({})", id, remoteAddress, e);
+            encoded = encodeError(e);
+        } finally {
+            byte[] result = encoded;
+            reactor.execute(() -> {
+                inFlight--;
+                if (result != null) {
+                    write(ByteBuffer.wrap(result));
+                }
+                dispatchNext();
+            });
+        }
+    }
+
+    private byte[] encodeError(RuntimeException e) {
+        try {
+            return codec.encode(Protocol.createError("unknown", "Erro interno: " + e.getMessage()));
+        } catch (RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    private void updateReadInterest() {
+        if (closed || key == null) {
+            return;
+        }
+        if (pendingFrames.size() >= maxInFlight || !outbound.isWritable()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        } else {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    @Override
+    public void send(Response response) {
+        if (response == null || closed) {
+            return;
+        }
+        byte[] encoded = codec.encode(response);
+        reactor.execute(() -> write(ByteBuffer.wrap(encoded)));
+    }
+
+    private void write(ByteBuffer buffer) {
+        if (closed) {
+            return;
+        }
+        if (!outbound.offer(buffer)) {
+            log.warn("Fila de saída excedeu o limite para {} ({})", id, remoteAddress);
+            closeNow();
+            return;
+        }
+        onWritable();
+    }
+
+    @Override
+    public void onWritable() {
+        try {
+            ByteBuffer head;
+            while ((head = outbound.peek()) != null) {
+                channel.write(head);
+                if (head.hasRemaining()) {
+                    // Socket cheio: aguarda OP_WRITE
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    updateReadInterest();
+                    return;
+                }
+                outbound.remove(head);
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            dispatchNext();
+        } catch (IOException e) {
+            log.debug("Erro de escrita em {}: {}", remoteAddress, e.getMessage());
+            closeNow();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public long getConnectedAt() {
+        return connectedAt;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        if (reactor.inReactorThread()) {
+            closeNow();
+        } else {
+            reactor.execute(this::closeNow);
+        }
+    }
+
+    @Override
+    public void closeNow() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        registry.unregister(this);
+        pendingFrames.clear();
+        outbound.clear();
+        codec.release();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+            log.info("Cliente desconectado: {}", remoteAddress);
+        } catch (IOException e) {
+            log.error("Erro ao fechar socket", e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.consultoria.app.tcp;
+
+/**
+ * Canal registrado num {@link NioReactor}; os métodos rodam na thread do reactor
+ */
+interface NioHandler {
+
+    void onReadable();
+
+    void onWritable();
+
+    /** Fecha o canal imediatamente (já na thread do reactor) */
+    void closeNow();
+}
@@ -0,0 +1,118 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Loop de eventos NIO: um Selector multiplexando várias conexões em uma única
+ * thread. Todo o estado de uma NioConnection (ou outro {@link NioHandler}) é
+ * alterado apenas nesta thread; outras threads agendam trabalho via
+ * {@link #execute(Runnable)}.
+ */
+public class NioReactor implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(NioReactor.class);
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public NioReactor(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Agenda tarefa para executar na thread do reactor
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    public boolean inReactorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioHandler connection = (NioHandler) key.attachment();
+                    if (!key.isValid()) {
+                        connection.closeNow();
+                        continue;
+                    }
+                    if (key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                log.error("Erro no loop do reactor {}", thread.getName(), e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Erro ao executar tarefa no reactor", e);
+            }
+        }
+    }
+
+    /**
+     * Fecha todas as conexões registradas e encerra o loop
+     */
+    public void stop() {
+        execute(() -> {
+            for (SelectionKey key : selector.keys()) {
+                ((NioHandler) key.attachment()).closeNow();
+            }
+            running = false;
+        });
+        try {
+            thread.join(2000);
+            selector.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Erro ao fechar selector", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+
+/**
+ * Servidor TCP/IP não bloqueante (acceptor + reactors).
+ * O acceptor aceita conexões e as distribui em round-robin entre poucos
+ * reactors; apenas frames completos são enviados ao pool de workers.
+ */
+public class NioServer {
+    private static final Logger log = LoggerFactory.getLogger(NioServer.class);
+
+    private final int port;
+    private final CommandDispatcher dispatcher;
+    private final ConnectionRegistry registry;
+    private final IdleMonitor idleMonitor;
+    private final ConnectionSettings settings;
+    private final Executor workers;
+    private final NioReactor[] reactors;
+
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running = false;
+    private int nextReactor = 0;
+
+    public NioServer(int port, int ioThreads, CommandDispatcher dispatcher, ConnectionRegistry registry,
+            IdleMonitor idleMonitor, ConnectionSettings settings, Executor workers) throws IOException {
+        this.port = port;
+        this.dispatcher = dispatcher;
+        this.registry = registry;
+        this.idleMonitor = idleMonitor;
+        this.settings = settings;
+        this.workers = workers;
+        this.reactors = new NioReactor[Math.max(1, ioThreads)];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new NioReactor("TCP-NIO-Reactor-" + i);
+        }
+    }
+
+    /**
+     * Abre o socket e executa o loop de accept na thread atual
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        for (NioReactor reactor : reactors) {
+            reactor.start();
+        }
+        running = true;
+
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                if (registry.size() >= settings.getMaxConnections()) {
+                    rejectBusy(channel);
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                NioReactor reactor = reactors[nextReactor];
+                nextReactor = (nextReactor + 1) % reactors.length;
+
+                NioConnection connection = new NioConnection(channel, reactor, dispatcher, registry,
+                        idleMonitor, settings, workers);
+                reactor.execute(() -> {
+                    try {
+                        connection.register();
+                    } catch (IOException e) {
+                        log.error("Erro ao registrar conexão", e);
+                        connection.closeNow();
+                    }
+                });
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Erro ao aceitar conexão", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Responde BUSY e fecha conexão que excede a capacidade do servidor
+     */
+    private void rejectBusy(SocketChannel channel) {
+        log.warn("Conexão de {} rejeitada: servidor ocupado", channel.socket().getInetAddress());
+        try {
+            channel.write(ByteBuffer.wrap(
+                    Protocol.encodeResponseBytes(Protocol.createBusy(null, settings.getBusyRetryAfterMs()))));
+        } catch (IOException e) {
+            log.debug("Erro ao enviar BUSY: {}", e.getMessage());
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("Erro ao fechar socket", e);
+            }
+        }
+    }
+
+    /**
+     * Deixa de aceitar conexões; as conexões abertas continuam sendo atendidas
+     */
+    public void stopAccepting() {
+        running = false;
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            log.error("Erro ao fechar server channel", e);
+        }
+    }
+
+    public void stop() {
+        stopAccepting();
+        for (NioReactor reactor : reactors) {
+            reactor.stop();
+        }
+    }
+}
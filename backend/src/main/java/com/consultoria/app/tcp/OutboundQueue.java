@@ -0,0 +1,149 @@
+package com.consultoria.app.tcp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Fila de saída limitada de uma conexão, com high/low watermarks.
+ * Ao passar do high watermark a conexão fica "não gravável" (deve parar de
+ * ler novos comandos) até a fila cair abaixo do low watermark.
+ */
+public class OutboundQueue {
+    private final Deque<ByteBuffer> frames = new ArrayDeque<>();
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int maxBytes;
+
+    private long queuedBytes = 0;
+    private boolean writable = true;
+    private long unwritableSince = 0;
+    private long writeStartedAt = 0;
+
+    public OutboundQueue(ConnectionSettings settings) {
+        this.highWatermark = settings.getOutboundHighWatermark();
+        this.lowWatermark = Math.min(settings.getOutboundLowWatermark(), highWatermark);
+        this.maxBytes = Math.max(settings.getOutboundMaxBytes(), highWatermark);
+    }
+
+    /**
+     * Enfileira frame. Retorna false se o limite máximo seria excedido.
+     */
+    public synchronized boolean offer(ByteBuffer frame) {
+        if (!reserve(frame.remaining())) {
+            return false;
+        }
+        frames.add(frame);
+        return true;
+    }
+
+    /**
+     * Conta bytes guardados fora desta fila (ex.: mensagens WebSocket), com
+     * os mesmos limites e watermarks. Retorna false se o máximo seria excedido.
+     */
+    public synchronized boolean reserve(int bytes) {
+        if (queuedBytes > 0 && queuedBytes + bytes > maxBytes) {
+            return false;
+        }
+        queuedBytes += bytes;
+        if (writable && queuedBytes >= highWatermark) {
+            writable = false;
+            unwritableSince = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    /**
+     * Desconta bytes reservados com {@link #reserve} depois de enviados
+     */
+    public synchronized void release(int bytes) {
+        // Depois de clear() a mensagem que estava sendo escrita não conta mais
+        queuedBytes = Math.max(0, queuedBytes - bytes);
+        if (!writable && queuedBytes <= lowWatermark) {
+            writable = true;
+            unwritableSince = 0;
+            notifyAll();
+        }
+    }
+
+    public synchronized ByteBuffer peek() {
+        return frames.peek();
+    }
+
+    /**
+     * Remove o frame do topo após ser totalmente escrito
+     */
+    public synchronized void remove(ByteBuffer frame) {
+        if (frames.peek() != frame) {
+            return;
+        }
+        frames.poll();
+        release(frame.limit());
+    }
+
+    /**
+     * Aguarda a fila ficar abaixo do low watermark (modo bloqueante)
+     */
+    public synchronized boolean awaitWritable(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!writable) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    public synchronized boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Instante em que a fila passou do high watermark (0 se gravável)
+     */
+    public synchronized long getUnwritableSince() {
+        return unwritableSince;
+    }
+
+    /**
+     * Marca o início de uma escrita bloqueante no socket (modo bloqueante);
+     * cada frame escrito renova a marca
+     */
+    public synchronized void writeStarted() {
+        writeStartedAt = System.currentTimeMillis();
+    }
+
+    public synchronized void writeFinished() {
+        writeStartedAt = 0;
+    }
+
+    /**
+     * Instante em que a escrita atual começou sem avançar (0 se não há escrita)
+     */
+    public synchronized long getWriteStartedAt() {
+        return writeStartedAt;
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public synchronized int getQueuedFrames() {
+        return frames.size();
+    }
+
+    public synchronized void clear() {
+        frames.clear();
+        queuedBytes = 0;
+        writable = true;
+        unwritableSince = 0;
+        writeStartedAt = 0;
+        notifyAll();
+    }
+}
@@ -1,15 +1,61 @@
 package com.consultoria.app.tcp;
 
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.payload.EvaluationListPayload;
+import com.consultoria.app.tcp.payload.RequestListPayload;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import lombok.Data;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Protocolo de comunicação JSON sobre TCP/IP
  * Formato: {"type": "COMMAND_NAME", "sessionId": "...", "data": {...}}
  */
 public class Protocol {
-    private static final Gson gson = new Gson();
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new ResponseAdapterFactory())
+            .registerTypeAdapter(RequestListPayload.class, new RequestListPayload.Adapter())
+            .registerTypeAdapter(EvaluationListPayload.class, new EvaluationListPayload.Adapter())
+            .create();
+    private static final ThreadLocal<EncodeBuffer> ENCODE_BUFFER = ThreadLocal.withInitial(EncodeBuffer::new);
+
+    /** Tipos de controle tratados pelo próprio servidor, sem CommandHandler */
+    public static final String PING = "PING";
+    public static final String PONG = "PONG";
+    public static final String SERVER_DRAINING = "SERVER_DRAINING";
+    public static final String BUSY = "BUSY";
+    public static final String HELLO = "HELLO";
+    public static final String SUBSCRIBE = "SUBSCRIBE";
+    public static final String UNSUBSCRIBE = "UNSUBSCRIBE";
+    public static final String EVENT = "EVENT";
+
+    /** Versão do protocolo anunciada no HELLO */
+    public static final int VERSION = 2;
+    public static final String FRAMING_LINE = "line";
+    public static final String FRAMING_LENGTH_PREFIXED = "length-prefixed";
+    public static final String CAPABILITY_BINARY = "binary";
+    public static final String CAPABILITY_DEFLATE = "deflate";
+    public static final String ENCODING_JSON = "json";
+    public static final String ENCODING_CBOR = "cbor";
 
     @Data
     public static class Message {
@@ -17,6 +63,9 @@ public class Protocol {
         private String sessionId;
         private JsonObject data;
         private String requestId; // Para correlacionar request/response
+        private transient byte[] binary; // Seção binária (enquadramento com prefixo de tamanho)
+        private transient TcpConnection connection; // Conexão de origem (SUBSCRIBE)
+        private transient User user; // Usuário já validado pelo BATCH
 
         public String getType() {
             return type;
@@ -49,6 +98,34 @@ public class Protocol {
         public void setRequestId(String requestId) {
             this.requestId = requestId;
         }
+
+        public byte[] getBinary() {
+            return binary;
+        }
+
+        public void setBinary(byte[] binary) {
+            this.binary = binary;
+        }
+
+        public TcpConnection getConnection() {
+            return connection;
+        }
+
+        public void setConnection(TcpConnection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Usuário resolvido por quem repassa a mensagem (sub-comando de
+         * BATCH); com ele a rota não consulta a sessão de novo
+         */
+        public User getUser() {
+            return user;
+        }
+
+        public void setUser(User user) {
+            this.user = user;
+        }
     }
 
     @Data
@@ -58,6 +135,11 @@ public class Protocol {
         private boolean success;
         private String message;
         private JsonObject data;
+        private Integer seq; // Número do frame em respostas em partes (a partir de 0)
+        private Boolean last; // true no frame final de respostas em partes
+        private transient byte[] binary; // Seção binária (enquadramento com prefixo de tamanho)
+        private transient String command; // Comando que gerou a resposta (métricas)
+        private transient Object payload; // Dados tipados, escritos como "data" pelo TypeAdapter registrado
     }
 
     /**
@@ -78,6 +160,31 @@ public class Protocol {
         }
     }
 
+    /**
+     * Deserializa Message lendo o JSON direto dos bytes UTF-8 do frame, sem
+     * montar a String da linha inteira. Não altera a posição do buffer.
+     */
+    public static Message decode(ByteBuffer json) {
+        try {
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(json.array(),
+                    json.arrayOffset() + json.position(), json.remaining()), StandardCharsets.UTF_8);
+            return gson.fromJson(gson.newJsonReader(reader), Message.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converte JSON já parseado em Message (ex.: sub-mensagens de um BATCH)
+     */
+    public static Message decode(JsonElement json) {
+        try {
+            return gson.fromJson(json, Message.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Serializa Response para JSON string
      */
@@ -85,6 +192,61 @@ public class Protocol {
         return gson.toJson(response) + "\n";
     }
 
+    /**
+     * Serializa Response em bytes UTF-8 com '\n' no fim, sem String intermediária
+     */
+    public static byte[] encodeResponseBytes(Response response) {
+        return toBytes(response, true);
+    }
+
+    /**
+     * Serializa Response em bytes UTF-8 sem delimitador (enquadramento com prefixo de tamanho)
+     */
+    public static byte[] encodeJsonBytes(Response response) {
+        return toBytes(response, false);
+    }
+
+    /**
+     * Escreve Response como JSON direto no stream, via JsonWriter
+     */
+    public static void writeResponse(Response response, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        gson.toJson(response, Response.class, jsonWriter);
+        jsonWriter.flush();
+    }
+
+    private static byte[] toBytes(Response response, boolean newline) {
+        EncodeBuffer buffer = ENCODE_BUFFER.get();
+        try {
+            writeResponse(response, buffer);
+            if (newline) {
+                buffer.write('\n');
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream não lança IOException
+            throw new IllegalStateException(e);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Converte Response em objeto JSON (ex.: resultados dentro de um BATCH)
+     */
+    public static JsonObject toJsonTree(Response response) {
+        return gson.toJsonTree(response).getAsJsonObject();
+    }
+
+    /**
+     * Escreve o payload tipado pelo TypeAdapter registrado em um JsonWriter
+     * qualquer (ex.: o que escreve direto em CBOR), sem montar árvore
+     */
+    public static void writePayload(Object payload, JsonWriter out) {
+        gson.toJson(payload, payload.getClass(), out);
+    }
+
     /**
      * Cria resposta de sucesso
      */
@@ -98,6 +260,28 @@ public class Protocol {
         return response;
     }
 
+    /**
+     * Cria resposta de sucesso com dados tipados; o payload é serializado
+     * direto no JsonWriter pelo TypeAdapter registrado para a classe dele,
+     * sem montar árvore JsonObject
+     */
+    public static Response createTypedSuccess(String requestId, String message, Object payload) {
+        Response response = createSuccess(requestId, message, null);
+        response.setPayload(payload);
+        return response;
+    }
+
+    /**
+     * Frame de uma resposta em partes: todos usam o requestId do pedido e o
+     * cliente junta os dados até receber "last": true
+     */
+    public static Response createChunk(String requestId, String message, Object payload, int seq, boolean last) {
+        Response response = createTypedSuccess(requestId, message, payload);
+        response.setSeq(seq);
+        response.setLast(last);
+        return response;
+    }
+
     /**
      * Cria resposta de erro
      */
@@ -111,6 +295,101 @@ public class Protocol {
         return response;
     }
 
+    /**
+     * Cria heartbeat enviado pelo servidor; o cliente responde com {"type": "PONG"}
+     */
+    public static Response createPing() {
+        JsonObject data = new JsonObject();
+        data.addProperty("timestamp", System.currentTimeMillis());
+
+        Response response = new Response();
+        response.setType(PING);
+        response.setSuccess(true);
+        response.setMessage("ping");
+        response.setData(data);
+        return response;
+    }
+
+    /**
+     * Cria resposta a um PING enviado pelo cliente
+     */
+    public static Response createPong(String requestId) {
+        Response response = createSuccess(requestId, "pong", new JsonObject());
+        response.setType(PONG);
+        return response;
+    }
+
+    /**
+     * Aviso de drain enviado a todos os clientes no shutdown
+     */
+    public static Response createDraining(long drainTimeoutMs, long retryAfterMs) {
+        JsonObject data = new JsonObject();
+        data.addProperty("drainTimeoutMs", drainTimeoutMs);
+        data.addProperty("retryAfterMs", retryAfterMs);
+
+        Response response = new Response();
+        response.setType(SERVER_DRAINING);
+        response.setSuccess(true);
+        response.setMessage("Servidor reiniciando");
+        response.setData(data);
+        return response;
+    }
+
+    /**
+     * Resposta a comando recebido durante o drain
+     */
+    public static Response createDrainingError(String requestId) {
+        Response response = createError(requestId, "Servidor reiniciando, tente novamente");
+        response.setType(SERVER_DRAINING);
+        return response;
+    }
+
+    /**
+     * Resposta de servidor sobrecarregado; o cliente deve repetir após retryAfterMs
+     */
+    public static Response createBusy(String requestId, long retryAfterMs) {
+        JsonObject data = new JsonObject();
+        data.addProperty("retryAfterMs", retryAfterMs);
+
+        Response response = createError(requestId, "Servidor ocupado, tente novamente");
+        response.setType(BUSY);
+        response.setData(data);
+        return response;
+    }
+
+    /**
+     * Resposta ao HELLO com o que foi aceito para a conexão
+     */
+    public static Response createHello(String requestId, int version, String framing, String encoding,
+            JsonArray capabilities, int maxFrameBytes) {
+        JsonObject data = new JsonObject();
+        data.addProperty("version", version);
+        data.addProperty("framing", framing);
+        data.addProperty("encoding", encoding);
+        data.add("capabilities", capabilities);
+        data.addProperty("maxFrameBytes", maxFrameBytes);
+
+        Response response = createSuccess(requestId, "hello", data);
+        response.setType(HELLO);
+        return response;
+    }
+
+    /**
+     * Frame não solicitado para assinantes de um tópico
+     * Formato: {"type": "EVENT", "message": "STATUS", "data": {"topic": "request:1", ...}}
+     */
+    public static Response createEvent(String topic, String event, JsonObject data) {
+        JsonObject eventData = data != null ? data.deepCopy() : new JsonObject();
+        eventData.addProperty("topic", topic);
+
+        Response response = new Response();
+        response.setType(EVENT);
+        response.setSuccess(true);
+        response.setMessage(event);
+        response.setData(eventData);
+        return response;
+    }
+
     /**
      * Valida estrutura da mensagem
      */
@@ -119,4 +398,74 @@ public class Protocol {
                 message.getType() != null &&
                 !message.getType().isEmpty();
     }
+
+    /**
+     * Escreve Response campo a campo; "data" vem do payload tipado quando
+     * existir, senão da árvore JsonObject. Mesmo formato do adapter reflexivo.
+     */
+    private static class ResponseAdapterFactory implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Response.class) {
+                return null;
+            }
+            TypeAdapter<Response> delegate = gson.getDelegateAdapter(this, TypeToken.get(Response.class));
+            TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+
+            return (TypeAdapter<T>) new TypeAdapter<Response>() {
+                @Override
+                public void write(JsonWriter out, Response response) throws IOException {
+                    if (response == null) {
+                        out.nullValue();
+                        return;
+                    }
+                    out.beginObject();
+                    out.name("type").value(response.getType());
+                    out.name("requestId").value(response.getRequestId());
+                    out.name("success").value(response.isSuccess());
+                    out.name("message").value(response.getMessage());
+                    if (response.getSeq() != null) {
+                        out.name("seq").value(response.getSeq());
+                        out.name("last").value(response.getLast());
+                    }
+                    if (response.getPayload() != null) {
+                        TypeAdapter<Object> payloadAdapter =
+                                (TypeAdapter<Object>) gson.getAdapter(response.getPayload().getClass());
+                        out.name("data");
+                        payloadAdapter.write(out, response.getPayload());
+                    } else if (response.getData() != null) {
+                        out.name("data");
+                        elementAdapter.write(out, response.getData());
+                    }
+                    out.endObject();
+                }
+
+                @Override
+                public Response read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
+    }
+
+    /**
+     * Buffer de serialização reaproveitado por thread; só buffers grandes
+     * (ex.: DOWNLOAD em base64) são descartados após o uso
+     */
+    private static class EncodeBuffer extends ByteArrayOutputStream {
+        private static final int INITIAL_CAPACITY = 4096;
+        private static final int RETAINED_CAPACITY = 256 * 1024;
+
+        EncodeBuffer() {
+            super(INITIAL_CAPACITY);
+        }
+
+        void release() {
+            reset();
+            if (buf.length > RETAINED_CAPACITY) {
+                buf = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
 }
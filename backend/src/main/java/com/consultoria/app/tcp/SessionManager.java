@@ -1,9 +1,13 @@
 package com.consultoria.app.tcp;
 
 import com.consultoria.app.model.User;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Gerenciador de sessões de usuários autenticados
@@ -12,8 +16,13 @@ public class SessionManager {
     private static SessionManager instance;
     private final Map<String, Session> sessions = new ConcurrentHashMap<>();
     private final long SESSION_TIMEOUT = 3600000; // 1 hora em ms
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
 
-    private SessionManager() {
+    /**
+     * Instância própria; fora de testes com vários servidores no mesmo
+     * processo use {@link #getInstance()}
+     */
+    SessionManager() {
     }
 
     public static synchronized SessionManager getInstance() {
@@ -33,6 +42,20 @@ public class SessionManager {
         return sessionId;
     }
 
+    /**
+     * Registra, com o mesmo sessionId, uma sessão criada em outro servidor
+     * (AUTH RESUME com ticket válido). Retorna false se o sessionId já
+     * pertence a outro usuário.
+     */
+    public boolean resumeSession(String sessionId, User user) {
+        Session session = sessions.computeIfAbsent(sessionId, id -> new Session(id, user));
+        if (!session.getUser().getId().equals(user.getId())) {
+            return false;
+        }
+        session.updateActivity();
+        return true;
+    }
+
     /**
      * Valida sessão e retorna usuário se válida
      */
@@ -48,7 +71,9 @@ public class SessionManager {
 
         // Verifica timeout
         if (System.currentTimeMillis() - session.getLastActivity() > SESSION_TIMEOUT) {
-            sessions.remove(sessionId);
+            if (sessions.remove(sessionId, session)) {
+                notifyInvalidated(sessionId);
+            }
             return null;
         }
 
@@ -61,7 +86,21 @@ public class SessionManager {
      * Invalida sessão (logout)
      */
     public void invalidateSession(String sessionId) {
-        sessions.remove(sessionId);
+        if (sessions.remove(sessionId) != null) {
+            notifyInvalidated(sessionId);
+        }
+    }
+
+    /**
+     * Avisa o listener com o sessionId de cada sessão encerrada, por logout
+     * ou expiração (ex.: para retirar as assinaturas SUBSCRIBE da sessão)
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    public void removeInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.remove(listener);
     }
 
     /**
@@ -76,7 +115,20 @@ public class SessionManager {
      */
     public void cleanExpiredSessions() {
         long now = System.currentTimeMillis();
-        sessions.entrySet().removeIf(entry -> now - entry.getValue().getLastActivity() > SESSION_TIMEOUT);
+        Iterator<Map.Entry<String, Session>> entries = sessions.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Session> entry = entries.next();
+            if (now - entry.getValue().getLastActivity() > SESSION_TIMEOUT) {
+                entries.remove();
+                notifyInvalidated(entry.getKey());
+            }
+        }
+    }
+
+    private void notifyInvalidated(String sessionId) {
+        for (Consumer<String> listener : invalidationListeners) {
+            listener.accept(sessionId);
+        }
     }
 
     /**
@@ -0,0 +1,102 @@
+package com.consultoria.app.tcp;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Tickets de retomada de sessão: sessionId, userId e emissão assinados com
+ * HMAC-SHA256. Um servidor que nunca viu o login aceita o ticket em AUTH
+ * RESUME e registra a sessão com o mesmo sessionId, desde que use o mesmo
+ * segredo. O bridge multiplexed pede o ticket no LOGIN, guarda-o sem
+ * repassar ao navegador e o apresenta quando a sessão troca de servidor.
+ */
+@Component
+public class SessionTickets {
+    private static final String ALGORITHM = "HmacSHA256";
+    /** Separa a assinatura destes tickets de outros usos do mesmo segredo (JWT) */
+    private static final String PURPOSE = "tcp-session";
+
+    @Value("${tcp.session.ticket-secret:${jwt.secret}}")
+    private String secret;
+
+    @Value("${tcp.session.ticket-max-age-ms:86400000}")
+    private long maxAgeMs;
+
+    /**
+     * Ticket para a sessão recém-criada; formato sessionId.userId.emissão.assinatura
+     */
+    public String issue(String sessionId, Long userId) {
+        String body = sessionId + "." + userId + "." + System.currentTimeMillis();
+        return body + "." + sign(body);
+    }
+
+    /**
+     * Momento em que um ticket emitido agora deixa de valer
+     */
+    public long expiresAt() {
+        return System.currentTimeMillis() + maxAgeMs;
+    }
+
+    /**
+     * Ticket com assinatura válida e dentro do prazo, ou null
+     */
+    public Ticket verify(String ticket) {
+        if (ticket == null) {
+            return null;
+        }
+        String[] parts = ticket.split("\\.");
+        if (parts.length != 4) {
+            return null;
+        }
+        String body = parts[0] + "." + parts[1] + "." + parts[2];
+        byte[] expected = sign(body).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, parts[3].getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+        try {
+            long issuedAt = Long.parseLong(parts[2]);
+            if (System.currentTimeMillis() - issuedAt > maxAgeMs) {
+                return null;
+            }
+            return new Ticket(parts[0], Long.valueOf(parts[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String sign(String body) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            byte[] signature = mac.doFinal((PURPOSE + "|" + body).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC indisponível", e);
+        }
+    }
+
+    public static class Ticket {
+        private final String sessionId;
+        private final Long userId;
+
+        Ticket(String sessionId, Long userId) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.consultoria.app.tcp;
+
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assinaturas de tópicos feitas via SUBSCRIBE. Quem altera os dados chama
+ * {@link #publish} e cada conexão assinante recebe um frame EVENT não
+ * solicitado, enfileirado na saída da conexão sem escrever pela thread que
+ * publica. Dentro de uma transação o envio só acontece após o commit.
+ * Cada assinatura guarda o sessionId que a fez: encerrada a sessão (logout
+ * ou expiração), suas assinaturas saem e a conexão recebe o EVENT
+ * {@value #SUBSCRIPTION_ENDED} de cada tópico, com o sessionId.
+ * Tópicos: request:{id}, project:{id}:chat, consultant:{id}:evaluations
+ */
+@Component
+public class SubscriptionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionRegistry.class);
+
+    /** EVENT enviado quando a assinatura sai porque a sessão foi encerrada */
+    public static final String SUBSCRIPTION_ENDED = "SUBSCRIPTION_ENDED";
+
+    @Value("${tcp.server.subscriptions.max-per-connection:100}")
+    private int maxPerConnection;
+
+    private final Map<String, Set<TcpConnection>> subscribers = new ConcurrentHashMap<>();
+    private final Map<TcpConnection, Set<String>> topicsByConnection = new ConcurrentHashMap<>();
+    /** Conexão -> tópico -> sessões que o assinaram nela (mais de uma no bridge multiplexed) */
+    private final Map<TcpConnection, Map<String, Set<String>>> sessionsByConnection = new ConcurrentHashMap<>();
+
+    public static String requestTopic(Long requestId) {
+        return "request:" + requestId;
+    }
+
+    public static String projectChatTopic(Long projectId) {
+        return "project:" + projectId + ":chat";
+    }
+
+    public static String consultantEvaluationsTopic(Long consultantId) {
+        return "consultant:" + consultantId + ":evaluations";
+    }
+
+    /**
+     * Assina o tópico; retorna false quando a conexão já atingiu o limite de assinaturas
+     */
+    public boolean subscribe(TcpConnection connection, String topic) {
+        return subscribe(connection, topic, null);
+    }
+
+    /**
+     * Como {@link #subscribe(TcpConnection, String)}, presa à sessão: sai
+     * junto quando a sessão é encerrada
+     */
+    public boolean subscribe(TcpConnection connection, String topic, String sessionId) {
+        Set<String> topics = topicsByConnection.computeIfAbsent(connection, c -> ConcurrentHashMap.newKeySet());
+        if (!topics.contains(topic) && topics.size() >= maxPerConnection) {
+            return false;
+        }
+        topics.add(topic);
+        subscribers.compute(topic, (key, connections) -> {
+            if (connections == null) {
+                connections = ConcurrentHashMap.newKeySet();
+            }
+            connections.add(connection);
+            return connections;
+        });
+        if (sessionId != null) {
+            Map<String, Set<String>> sessions = sessionsByConnection.computeIfAbsent(connection,
+                    c -> new ConcurrentHashMap<>());
+            synchronized (sessions) {
+                sessions.computeIfAbsent(topic, t -> new HashSet<>()).add(sessionId);
+            }
+        }
+        return true;
+    }
+
+    public void unsubscribe(TcpConnection connection, String topic) {
+        Set<String> topics = topicsByConnection.get(connection);
+        if (topics != null) {
+            topics.remove(topic);
+        }
+        Map<String, Set<String>> sessions = sessionsByConnection.get(connection);
+        if (sessions != null) {
+            synchronized (sessions) {
+                sessions.remove(topic);
+            }
+        }
+        removeSubscriber(topic, connection);
+    }
+
+    /**
+     * Retira as assinaturas feitas com a sessão encerrada. O tópico só sai
+     * da conexão quando nenhuma outra sessão dela o assina; cada conexão
+     * recebe {@value #SUBSCRIPTION_ENDED} dos tópicos que a sessão perdeu.
+     */
+    public void unsubscribeSession(String sessionId) {
+        for (Map.Entry<TcpConnection, Map<String, Set<String>>> entry : sessionsByConnection.entrySet()) {
+            TcpConnection connection = entry.getKey();
+            Map<String, Set<String>> sessions = entry.getValue();
+            List<String> ended = new ArrayList<>();
+            List<String> emptied = new ArrayList<>();
+            synchronized (sessions) {
+                Iterator<Map.Entry<String, Set<String>>> entries = sessions.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<String, Set<String>> topic = entries.next();
+                    if (topic.getValue().remove(sessionId)) {
+                        ended.add(topic.getKey());
+                        if (topic.getValue().isEmpty()) {
+                            entries.remove();
+                            emptied.add(topic.getKey());
+                        }
+                    }
+                }
+            }
+            for (String topic : emptied) {
+                Set<String> topics = topicsByConnection.get(connection);
+                if (topics != null) {
+                    topics.remove(topic);
+                }
+                removeSubscriber(topic, connection);
+            }
+            if (ended.isEmpty() || !connection.isOpen()) {
+                continue;
+            }
+            for (String topic : ended) {
+                JsonObject data = new JsonObject();
+                data.addProperty("sessionId", sessionId);
+                connection.sendAsync(Protocol.createEvent(topic, SUBSCRIPTION_ENDED, data));
+            }
+            log.debug("Sessão encerrada: {} assinaturas removidas da conexão {}", ended.size(),
+                    connection.getId());
+        }
+    }
+
+    /**
+     * Remove todas as assinaturas da conexão (chamado ao fechar)
+     */
+    public void unsubscribeAll(TcpConnection connection) {
+        sessionsByConnection.remove(connection);
+        Set<String> topics = topicsByConnection.remove(connection);
+        if (topics == null) {
+            return;
+        }
+        for (String topic : topics) {
+            removeSubscriber(topic, connection);
+        }
+    }
+
+    /**
+     * Envia EVENT aos assinantes do tópico
+     */
+    public void publish(String topic, String event, JsonObject data) {
+        if (!subscribers.containsKey(topic)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Evento de alteração revertida não deve chegar aos clientes
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver(topic, event, data);
+                }
+            });
+            return;
+        }
+        deliver(topic, event, data);
+    }
+
+    public Set<String> getTopics(TcpConnection connection) {
+        Set<String> topics = topicsByConnection.get(connection);
+        return topics != null ? new HashSet<>(topics) : Collections.<String>emptySet();
+    }
+
+    public int getTopicCount() {
+        return subscribers.size();
+    }
+
+    private void deliver(String topic, String event, JsonObject data) {
+        Set<TcpConnection> connections = subscribers.get(topic);
+        if (connections == null) {
+            return;
+        }
+        Protocol.Response response = Protocol.createEvent(topic, event, data);
+        for (TcpConnection connection : connections) {
+            if (connection.isOpen()) {
+                connection.sendAsync(response);
+            } else {
+                unsubscribeAll(connection);
+            }
+        }
+        log.debug("Evento {} publicado em {} para {} conexões", event, topic, connections.size());
+    }
+
+    private void removeSubscriber(String topic, TcpConnection connection) {
+        subscribers.computeIfPresent(topic, (key, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+}
@@ -2,108 +2,398 @@ package com.consultoria.app.tcp;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Bridge WebSocket para TCP/IP
- * Frontend conecta via WebSocket, bridge encaminha para servidor TCP/IP
+ * Frontend conecta via WebSocket, bridge encaminha para servidor TCP/IP.
+ * No modo in-process (padrão) os comandos vão direto ao dispatcher do
+ * TCPServer deste processo; no modo socket cada sessão abre sua conexão TCP,
+ * lida por um único reactor NIO compartilhado. Os modos socket e multiplexed
+ * distribuem as sessões entre os servidores de tcp.bridge.backends.
+ * No modo in-process a sessão conta em tcp.server.max-connections (acima do
+ * limite recebe BUSY) e os envios entram no OutboundQueue da conexão. Nos
+ * outros modos cada sessão é envolvida por um {@link WebSocketSender}:
+ * respostas e EVENTs entram numa fila ordenada escrita pelas threads
+ * TCP-Bridge-Writer, e o reactor e as threads de leitura multiplexed nunca
+ * esperam um navegador. Uma escrita parada além de send-time-limit-ms fecha
+ * a sessão, verificada a cada segundo.
+ * Mensagens binárias (arquivos sem base64) só são aceitas no modo in-process.
+ * Mensagens do navegador chegam em partes do tamanho dos buffers do
+ * container (tcp.bridge.message-buffer-bytes) e são juntadas aqui só quando
+ * não cabem num pedaço, até os limites max-*-message-bytes.
  */
 @Component
-public class TCPBridge extends TextWebSocketHandler {
+public class TCPBridge extends AbstractWebSocketHandler {
     private static final Logger log = LoggerFactory.getLogger(TCPBridge.class);
-    private static final String TCP_HOST = "localhost";
-    private static final int TCP_PORT = 8888;
 
-    private final Map<String, Socket> tcpConnections = new ConcurrentHashMap<>();
+    public static final String MODE_IN_PROCESS = "in-process";
+    public static final String MODE_SOCKET = "socket";
+    public static final String MODE_MULTIPLEXED = "multiplexed";
 
-    @Override
-    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        log.info("WebSocket conectado: {}", session.getId());
+    /**
+     * in-process = mesmo JVM do TCPServer, sem socket; socket = conexão TCP por sessão;
+     * multiplexed = poucas conexões TCP compartilhadas por todas as sessões
+     */
+    @Value("${tcp.bridge.mode:in-process}")
+    private String mode;
 
-        // Cria conexão TCP para este cliente WebSocket
-        try {
-            Socket tcpSocket = new Socket(TCP_HOST, TCP_PORT);
-            tcpConnections.put(session.getId(), tcpSocket);
+    /** Servidores TCP (host:porta separados por vírgula) nos modos socket e multiplexed */
+    @Value("${tcp.bridge.backends:localhost:8888}")
+    private String backends;
+
+    /** Conexões TCP compartilhadas por servidor no modo multiplexed */
+    @Value("${tcp.bridge.pool-size:4}")
+    private int poolSize;
+
+    /** Intervalo do PING de health check das conexões multiplexed */
+    @Value("${tcp.bridge.health-check.interval-ms:5000}")
+    private long healthCheckIntervalMs;
+
+    /** Sem PONG neste prazo a conexão multiplexed é derrubada e as sessões migram */
+    @Value("${tcp.bridge.health-check.timeout-ms:15000}")
+    private long healthCheckTimeoutMs;
+
+    /** Pipeline dos servidores TCP; o modo multiplexed exige mais de 1 */
+    @Value("${tcp.server.pipeline.max-in-flight:1}")
+    private int maxInFlight;
+
+    /** PING atrasado com pedidos em andamento: derruba a conexão só sem nenhum frame neste prazo */
+    @Value("${tcp.bridge.health-check.busy-timeout-ms:120000}")
+    private long healthCheckBusyTimeoutMs;
+
+    /** Prazo para abrir cada conexão TCP com os servidores */
+    @Value("${tcp.bridge.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    /** Respostas maiores que isso são descartadas no modo socket */
+    @Value("${tcp.server.max-frame-bytes:16777216}")
+    private int maxFrameBytes;
+
+    /** Tempo máximo de uma escrita ao navegador antes de fechar a sessão */
+    @Value("${tcp.bridge.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    /** Bytes aguardando envio ao navegador antes de fechar a sessão */
+    @Value("${tcp.bridge.send-buffer-limit-bytes:16777216}")
+    private int sendBufferLimitBytes;
 
-            // Thread para ler respostas do TCP e enviar para WebSocket
-            new Thread(() -> readFromTCP(session, tcpSocket)).start();
+    /** Maior mensagem de texto aceita do navegador (JSON com base64 de arquivo) */
+    @Value("${tcp.bridge.max-text-message-bytes:16777216}")
+    private int maxTextMessageBytes;
 
-            log.info("Conexão TCP estabelecida para sessão {}", session.getId());
-        } catch (Exception e) {
-            log.error("Erro ao conectar ao servidor TCP", e);
-            session.close(CloseStatus.SERVER_ERROR);
+    /** Maior mensagem binária aceita do navegador (frame com o arquivo cru) */
+    @Value("${tcp.bridge.max-binary-message-bytes:16777216}")
+    private int maxBinaryMessageBytes;
+
+    @Autowired
+    private TCPServer tcpServer;
+
+    /** Sessões com envio enfileirado (modos socket e multiplexed), usadas em todos os envios */
+    private final Map<String, WebSocketSender> sessions = new ConcurrentHashMap<>();
+    private final Map<String, BridgeChannel> tcpConnections = new ConcurrentHashMap<>();
+    private final Map<String, BridgeConnection> localConnections = new ConcurrentHashMap<>();
+    /** Mensagem do navegador ainda chegando em partes, por sessão */
+    private final Map<String, MessageAssembler> partials = new ConcurrentHashMap<>();
+    private final AtomicInteger nextBackend = new AtomicInteger();
+    private List<InetSocketAddress> backendAddresses;
+    private MultiplexedBridge multiplexed;
+    private NioReactor reactor;
+    private ExecutorService writers;
+    private ScheduledExecutorService sendTimeouts;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        backendAddresses = parseBackends(backends);
+        if (MODE_MULTIPLEXED.equals(mode)) {
+            if (maxInFlight <= 1) {
+                // Sessões compartilhando uma conexão sequencial ficariam na fila umas das outras
+                throw new IllegalStateException("tcp.bridge.mode=multiplexed exige "
+                        + "tcp.server.pipeline.max-in-flight > 1 (atual: " + maxInFlight + ")");
+            }
+            multiplexed = new MultiplexedBridge(backendAddresses, poolSize, healthCheckIntervalMs,
+                    healthCheckTimeoutMs, healthCheckBusyTimeoutMs, connectTimeoutMs);
+        } else if (MODE_SOCKET.equals(mode)) {
+            reactor = new NioReactor("TCP-Bridge-Reactor");
+            reactor.start();
+        }
+        if (!MODE_IN_PROCESS.equals(mode)) {
+            writers = Executors.newCachedThreadPool(TcpExecutors.namedThreadFactory("TCP-Bridge-Writer"));
+            sendTimeouts = Executors.newSingleThreadScheduledExecutor(
+                    TcpExecutors.namedThreadFactory("TCP-Bridge-Send-Timeout"));
+            sendTimeouts.scheduleAtFixedRate(this::closeStalledSessions, 1, 1, TimeUnit.SECONDS);
         }
     }
 
-    @Override
-    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String payload = message.getPayload();
-        Socket tcpSocket = tcpConnections.get(session.getId());
+    @PreDestroy
+    public void shutdown() {
+        if (multiplexed != null) {
+            multiplexed.shutdown();
+        }
+        if (reactor != null) {
+            reactor.stop();
+        }
+        if (sendTimeouts != null) {
+            sendTimeouts.shutdownNow();
+        }
+        if (writers != null) {
+            writers.shutdownNow();
+        }
+    }
 
-        if (tcpSocket != null && tcpSocket.isConnected()) {
-            try {
-                // Envia mensagem para servidor TCP
-                PrintWriter out = new PrintWriter(tcpSocket.getOutputStream(), true);
-                out.println(payload);
-                log.debug("Mensagem enviada ao TCP: {}", payload.substring(0, Math.min(100, payload.length())));
-            } catch (Exception e) {
-                log.error("Erro ao enviar mensagem para TCP", e);
+    /**
+     * Fecha sessões cuja escrita ao navegador está parada além do prazo; a
+     * thread presa na escrita é liberada quando o container fecha a sessão
+     */
+    private void closeStalledSessions() {
+        long now = System.currentTimeMillis();
+        for (WebSocketSender session : sessions.values()) {
+            long startedAt = session.getOutbound().getWriteStartedAt();
+            if (startedAt > 0 && now - startedAt > sendTimeLimitMs) {
+                log.warn("Envio à sessão {} parado há {}ms; fechando", session.getId(), now - startedAt);
+                close(session.getDelegate(), CloseStatus.SESSION_NOT_RELIABLE);
             }
-        } else {
-            log.warn("Socket TCP não disponível para sessão {}", session.getId());
+        }
+    }
+
+    /**
+     * Envio enfileirado para a sessão, limitado a send-buffer-limit-bytes
+     */
+    private WebSocketSender sender(WebSocketSession rawSession) {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setOutboundHighWatermark(sendBufferLimitBytes);
+        settings.setOutboundLowWatermark(sendBufferLimitBytes / 4);
+        settings.setOutboundMaxBytes(sendBufferLimitBytes);
+        return new WebSocketSender(rawSession, new OutboundQueue(settings), writers,
+                () -> close(rawSession, CloseStatus.SESSION_NOT_RELIABLE));
+    }
+
+    private static void close(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.debug("Erro ao fechar WebSocket {}: {}", session.getId(), e.getMessage());
         }
     }
 
     @Override
-    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        log.info("WebSocket desconectado: {}", session.getId());
+    public void afterConnectionEstablished(WebSocketSession rawSession) throws Exception {
+        log.info("WebSocket conectado: {}", rawSession.getId());
+        if (MODE_IN_PROCESS.equals(mode)) {
+            if (tcpServer.isFull()) {
+                log.warn("Sessão {} recusada: limite de conexões atingido", rawSession.getId());
+                rawSession.sendMessage(new TextMessage(Protocol.encodeJsonBytes(
+                        Protocol.createBusy(null, tcpServer.getBusyRetryAfterMs()))));
+                rawSession.close(CloseStatus.SERVICE_OVERLOAD);
+                return;
+            }
+            // A conexão enfileira e conta os próprios envios, sem o decorator
+            BridgeConnection connection = tcpServer.openBridgeConnection(rawSession);
+            if (connection == null) {
+                log.error("Servidor TCP não inicializado; recusando sessão {}", rawSession.getId());
+                rawSession.close(CloseStatus.SERVER_ERROR);
+                return;
+            }
+            localConnections.put(rawSession.getId(), connection);
+            log.info("Sessão {} atendida no processo (conexão {})", rawSession.getId(), connection.getId());
+            return;
+        }
 
-        // Fecha conexão TCP
-        Socket tcpSocket = tcpConnections.remove(session.getId());
-        if (tcpSocket != null) {
+        WebSocketSender session = sender(rawSession);
+        sessions.put(session.getId(), session);
+        if (multiplexed != null) {
+            try {
+                multiplexed.open(session);
+            } catch (IOException e) {
+                log.error("Erro ao conectar ao servidor TCP", e);
+                session.close(CloseStatus.SERVER_ERROR);
+            }
+            return;
+        }
+
+        // Cria conexão TCP para este cliente WebSocket, em rodízio entre os servidores
+        int first = Math.floorMod(nextBackend.getAndIncrement(), backendAddresses.size());
+        for (int i = 0; i < backendAddresses.size(); i++) {
+            InetSocketAddress address = backendAddresses.get((first + i) % backendAddresses.size());
+            String name = address.getHostString() + ":" + address.getPort();
             try {
-                tcpSocket.close();
-            } catch (Exception e) {
-                log.error("Erro ao fechar socket TCP", e);
+                BridgeChannel channel = BridgeChannel.open(reactor, address.getHostString(), address.getPort(),
+                        connectTimeoutMs, session, maxFrameBytes);
+                tcpConnections.put(session.getId(), channel);
+
+                log.info("Conexão TCP estabelecida para sessão {} em {}", session.getId(), name);
+                return;
+            } catch (IOException e) {
+                log.warn("Servidor TCP {} indisponível: {}", name, e.getMessage());
             }
         }
+        log.error("Nenhum servidor TCP disponível para sessão {}", session.getId());
+        session.close(CloseStatus.SERVER_ERROR);
     }
 
     /**
-     * Lê respostas do servidor TCP e envia para cliente WebSocket
+     * Lê a lista "host:porta,host:porta" de tcp.bridge.backends
      */
-    private void readFromTCP(WebSocketSession session, Socket tcpSocket) {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(tcpSocket.getInputStream()))) {
-            String line;
-            while ((line = in.readLine()) != null) {
-                if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(line));
-                    log.debug("Resposta TCP enviada ao WebSocket: {}", line.substring(0, Math.min(100, line.length())));
-                } else {
-                    break;
-                }
+    static List<InetSocketAddress> parseBackends(String value) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String item : value.split(",")) {
+            String backend = item.trim();
+            if (backend.isEmpty()) {
+                continue;
             }
-        } catch (Exception e) {
-            log.error("Erro ao ler do TCP", e);
-        } finally {
-            try {
-                if (session.isOpen()) {
-                    session.close();
-                }
-            } catch (Exception e) {
-                log.error("Erro ao fechar sessão WebSocket", e);
+            int colon = backend.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("tcp.bridge.backends inválido: " + backend);
             }
+            addresses.add(InetSocketAddress.createUnresolved(backend.substring(0, colon),
+                    Integer.parseInt(backend.substring(colon + 1))));
+        }
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("tcp.bridge.backends vazio");
+        }
+        return addresses;
+    }
+
+    /**
+     * Mensagens maiores que o buffer do container chegam em partes
+     */
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        String payload;
+        if (message.isLast() && !partials.containsKey(session.getId())) {
+            // Mensagem inteira num pedaço: sem cópia
+            payload = message.getPayload();
+        } else {
+            ByteBuffer complete = assemble(session, ByteBuffer.wrap(message.asBytes()), message.isLast(),
+                    maxTextMessageBytes);
+            if (complete == null) {
+                return;
+            }
+            payload = new String(complete.array(), complete.arrayOffset() + complete.position(),
+                    complete.remaining(), StandardCharsets.UTF_8);
+        }
+
+        BridgeConnection connection = localConnections.get(session.getId());
+        if (connection != null) {
+            connection.handle(payload);
+            return;
+        }
+        if (multiplexed != null) {
+            multiplexed.forward(decorated(session), payload);
+            return;
+        }
+
+        BridgeChannel channel = tcpConnections.get(session.getId());
+
+        if (channel != null) {
+            // Envia mensagem para servidor TCP
+            channel.send(payload);
+            log.debug("Mensagem enviada ao TCP: {}", payload.substring(0, Math.min(100, payload.length())));
+        } else {
+            log.warn("Socket TCP não disponível para sessão {}", session.getId());
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        BridgeConnection connection = localConnections.get(session.getId());
+        if (connection == null) {
+            // Os modos socket e multiplexed falam o protocolo por linha com o servidor TCP
+            if (message.isLast()) {
+                MultiplexedBridge.sendText(decorated(session),
+                        Protocol.createError("unknown", "Mensagens binárias só são aceitas no modo in-process"));
+            }
+            return;
+        }
+        ByteBuffer payload = message.getPayload();
+        if (!message.isLast() || partials.containsKey(session.getId())) {
+            payload = assemble(session, payload, message.isLast(), maxBinaryMessageBytes);
+            if (payload == null) {
+                return;
+            }
+        }
+        connection.handleBinary(payload);
+    }
+
+    /**
+     * Acrescenta o pedaço à mensagem da sessão; retorna a mensagem completa
+     * no último pedaço, ou null. Acima do limite a sessão é fechada (1009).
+     */
+    private ByteBuffer assemble(WebSocketSession session, ByteBuffer piece, boolean last, int maxBytes)
+            throws IOException {
+        MessageAssembler assembler = partials.computeIfAbsent(session.getId(), id -> new MessageAssembler(maxBytes));
+        if (!assembler.append(piece)) {
+            partials.remove(session.getId());
+            log.warn("Mensagem da sessão {} excede {} bytes; fechando", session.getId(), maxBytes);
+            session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+            return null;
+        }
+        if (!last) {
+            return null;
+        }
+        partials.remove(session.getId());
+        return assembler.finish();
+    }
+
+    /**
+     * Sessão com envio enfileirado correspondente à recebida do container
+     */
+    private WebSocketSession decorated(WebSocketSession session) {
+        WebSocketSender decorated = sessions.get(session.getId());
+        return decorated != null ? decorated : session;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        log.info("WebSocket desconectado: {}", session.getId());
+        partials.remove(session.getId());
+        WebSocketSender sender = sessions.remove(session.getId());
+        if (sender != null) {
+            sender.clear();
+        }
+
+        BridgeConnection connection = localConnections.remove(session.getId());
+        if (connection != null) {
+            connection.closed();
+            return;
+        }
+        if (multiplexed != null) {
+            multiplexed.close(session);
+            return;
+        }
+
+        // Fecha conexão TCP
+        BridgeChannel channel = tcpConnections.remove(session.getId());
+        if (channel != null) {
+            channel.close();
         }
     }
 
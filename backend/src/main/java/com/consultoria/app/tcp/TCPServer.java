@@ -6,17 +6,27 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Servidor TCP/IP principal
@@ -28,25 +38,186 @@ public class TCPServer {
     @Value("${tcp.server.port:8888}")
     private int port;
 
+    /** blocking = uma thread por conexão; nio = selector + pool de workers */
+    @Value("${tcp.server.mode:blocking}")
+    private String mode;
+
+    /** platform = pool fixo de threads; virtual = virtual thread por tarefa (Java 21+) */
+    @Value("${tcp.server.executor:platform}")
+    private String executor;
+
+    @Value("${tcp.server.threads:20}")
+    private int threads;
+
+    @Value("${tcp.server.io-threads:2}")
+    private int ioThreads;
+
+    /** Comandos simultâneos por conexão; 1 = processa um comando por vez, em ordem */
+    @Value("${tcp.server.pipeline.max-in-flight:1}")
+    private int maxInFlight;
+
+    @Value("${tcp.server.outbound.high-watermark:1048576}")
+    private int outboundHighWatermark;
+
+    @Value("${tcp.server.outbound.low-watermark:262144}")
+    private int outboundLowWatermark;
+
+    @Value("${tcp.server.outbound.max-bytes:33554432}")
+    private int outboundMaxBytes;
+
+    @Value("${tcp.server.outbound.slow-consumer-timeout-ms:60000}")
+    private long slowConsumerTimeoutMs;
+
+    /** Sem tráfego por este tempo o servidor envia PING */
+    @Value("${tcp.server.heartbeat-interval-ms:30000}")
+    private long heartbeatIntervalMs;
+
+    /** Sem tráfego por este tempo a conexão é fechada (0 = desativado) */
+    @Value("${tcp.server.idle-timeout-ms:90000}")
+    private long idleTimeoutMs;
+
+    /** Frames maiores são rejeitados com erro e descartados sem ficar em memória */
+    @Value("${tcp.server.max-frame-bytes:16777216}")
+    private int maxFrameBytes;
+
+    /** Permite que clientes negociem via HELLO o enquadramento com prefixo de tamanho */
+    @Value("${tcp.server.framing.length-prefixed:true}")
+    private boolean lengthPrefixedFraming;
+
+    /** Mensagens em CBOR negociadas via HELLO, em vez de JSON */
+    @Value("${tcp.server.encoding.cbor:true}")
+    private boolean cborEncoding;
+
+    /** Compressão deflate negociada via HELLO, para frames acima do limiar */
+    @Value("${tcp.server.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${tcp.server.compression.threshold-bytes:1024}")
+    private int compressionThresholdBytes;
+
+    @Value("${tcp.server.compression.level:6}")
+    private int compressionLevel;
+
+    /** Conexões simultâneas; acima disso a conexão recebe BUSY e é fechada */
+    @Value("${tcp.server.max-connections:10000}")
+    private int maxConnections;
+
+    /** Conexões aguardando thread no modo bloqueante (pool de plataforma) */
+    @Value("${tcp.server.admission-queue:100}")
+    private int admissionQueue;
+
+    /** Conexão na fila de admissão por mais que isso recebe BUSY e é fechada */
+    @Value("${tcp.server.admission-timeout-ms:5000}")
+    private long admissionTimeoutMs;
+
+    /** Comandos executando ao mesmo tempo em todo o servidor (0 = sem limite) */
+    @Value("${tcp.server.max-concurrent-commands:200}")
+    private int maxConcurrentCommands;
+
+    /** Execuções simultâneas por tipo de comando (bulkhead); tipos ausentes usam só o limite global */
+    @Value("#{${tcp.server.bulkheads:{FILE:4,AUTH:8}}}")
+    private Map<String, Integer> bulkheads;
+
+    @Value("${tcp.server.busy.retry-after-ms:1000}")
+    private long busyRetryAfterMs;
+
+    /** Prazo para comandos em andamento terminarem no shutdown */
+    @Value("${tcp.server.drain.timeout-ms:30000}")
+    private long drainTimeoutMs;
+
+    /** Espalha as reconexões dos clientes após o drain por até este intervalo */
+    @Value("${tcp.server.drain.reconnect-jitter-ms:5000}")
+    private long reconnectJitterMs;
+
     @Autowired(required = false)
     private List<CommandHandler> commandHandlersList;
 
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private CommandRouter commandRouter;
+
     private ServerSocket serverSocket;
+    private NioServer nioServer;
     private ExecutorService threadPool;
+    private ExecutorService commandPool;
+    private ScheduledExecutorService maintenance;
+    private HashedWheelTimer timer;
+    private ExecutorService writerPool;
+    private Consumer<String> sessionEndedListener;
+    /** Sessões de login deste servidor; testes com vários servidores usam uma por servidor */
+    private SessionManager sessionManager = SessionManager.getInstance();
+    private IdleMonitor idleMonitor;
     private Thread serverThread;
-    private boolean running = false;
+    private volatile boolean running = false;
     private Map<String, CommandHandler> commandHandlers = new HashMap<>();
+    private CommandDispatcher dispatcher;
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+    private final Set<PendingAdmission> pendingAdmissions = ConcurrentHashMap.newKeySet();
+    private final ConnectionSettings connectionSettings = new ConnectionSettings();
 
     @PostConstruct
     public void initialize() {
-        // Registra command handlers
+        // Registra command handlers e monta a tabela de rotas (type, action)
         if (commandHandlersList != null) {
             for (CommandHandler handler : commandHandlersList) {
                 commandHandlers.put(handler.getCommandType(), handler);
+                commandRouter.register(handler);
                 log.info("Registrado handler para comando: {}", handler.getCommandType());
             }
         }
 
+        dispatcher = new CommandDispatcher(commandRouter, sessionManager);
+        dispatcher.setCommandLimit(maxConcurrentCommands, busyRetryAfterMs);
+        if (bulkheads != null) {
+            for (Map.Entry<String, Integer> bulkhead : bulkheads.entrySet()) {
+                if (!commandHandlers.containsKey(bulkhead.getKey())) {
+                    log.warn("Bulkhead configurado para comando sem handler: {}", bulkhead.getKey());
+                }
+                dispatcher.setBulkhead(bulkhead.getKey(), bulkhead.getValue());
+                log.info("Bulkhead {}: {} execuções simultâneas", bulkhead.getKey(), bulkhead.getValue());
+            }
+        }
+
+        // Assinaturas SUBSCRIBE morrem com a conexão
+        connectionRegistry.setUnregisterListener(subscriptionRegistry::unsubscribeAll);
+        // ...e com a sessão que as fez (logout ou expiração)
+        sessionEndedListener = subscriptionRegistry::unsubscribeSession;
+        sessionManager.addInvalidationListener(sessionEndedListener);
+
+        connectionSettings.setMaxInFlight(maxInFlight);
+        connectionSettings.setOutboundHighWatermark(outboundHighWatermark);
+        connectionSettings.setOutboundLowWatermark(outboundLowWatermark);
+        connectionSettings.setOutboundMaxBytes(outboundMaxBytes);
+        connectionSettings.setSlowConsumerTimeoutMs(slowConsumerTimeoutMs);
+        connectionSettings.setMaxFrameBytes(maxFrameBytes);
+        connectionSettings.setLengthPrefixedFraming(lengthPrefixedFraming);
+        connectionSettings.setCborEncoding(cborEncoding);
+        connectionSettings.setCompressionEnabled(compressionEnabled);
+        connectionSettings.setCompressionThresholdBytes(compressionThresholdBytes);
+        connectionSettings.setCompressionLevel(compressionLevel);
+        connectionSettings.setMaxConnections(maxConnections);
+        connectionSettings.setBusyRetryAfterMs(busyRetryAfterMs);
+
+        // Verifica periodicamente consumidores lentos
+        maintenance = Executors.newSingleThreadScheduledExecutor(
+                TcpExecutors.namedThreadFactory("TCP-Maintenance"));
+        maintenance.scheduleAtFixedRate(
+                () -> connectionRegistry.closeSlowConsumers(slowConsumerTimeoutMs),
+                1, 1, TimeUnit.SECONDS);
+        maintenance.scheduleAtFixedRate(this::expireAdmissions, 1, 1, TimeUnit.SECONDS);
+        // Sessões expiradas saem mesmo sem nenhum comando que as consulte
+        maintenance.scheduleAtFixedRate(sessionManager::cleanExpiredSessions,
+                1, 1, TimeUnit.MINUTES);
+
+        // Uma roda de timeouts compartilhada por todas as conexões
+        timer = new HashedWheelTimer("TCP-Idle-Timer", 500, TimeUnit.MILLISECONDS, 512);
+        // Escritas de PING e EVENT fora das threads do timer e de quem publica;
+        // uma escrita travada é liberada pelo prazo de consumidor lento
+        writerPool = Executors.newCachedThreadPool(TcpExecutors.namedThreadFactory("TCP-Writer"));
+        idleMonitor = new IdleMonitor(timer, heartbeatIntervalMs, idleTimeoutMs, writerPool);
+
         // Inicia servidor em thread separada
         serverThread = new Thread(this::start);
         serverThread.setName("TCP-Server-Thread");
@@ -57,21 +228,41 @@ public class TCPServer {
      * Inicia servidor TCP/IP
      */
     public void start() {
+        if ("nio".equalsIgnoreCase(mode)) {
+            startNio();
+            return;
+        }
+
         try {
             serverSocket = new ServerSocket(port);
-            threadPool = Executors.newFixedThreadPool(20); // Pool de 20 threads
+            // Fila de admissão limitada: conexões além dela recebem BUSY
+            threadPool = TcpExecutors.createBounded(executor, threads, admissionQueue, "TCP-Worker");
+            if (maxInFlight > 1) {
+                // Comandos em pipeline não podem disputar threads com os ClientHandlers
+                commandPool = TcpExecutors.create(executor, threads, "TCP-Command");
+            }
             running = true;
 
-            log.info("===========================================");
-            log.info("Servidor TCP/IP iniciado na porta {}", port);
-            log.info("Aguardando conexões...");
-            log.info("===========================================");
+            logStarted();
 
             while (running) {
                 try {
                     Socket clientSocket = serverSocket.accept();
-                    ClientHandler clientHandler = new ClientHandler(clientSocket, commandHandlers);
-                    threadPool.execute(clientHandler);
+                    // Conexões na fila de admissão também contam no limite
+                    if (isFull()) {
+                        rejectBusy(clientSocket);
+                        continue;
+                    }
+                    ClientHandler clientHandler = new ClientHandler(clientSocket, dispatcher,
+                            connectionRegistry, idleMonitor, connectionSettings, commandPool, writerPool);
+                    PendingAdmission admission = new PendingAdmission(clientSocket, clientHandler);
+                    pendingAdmissions.add(admission);
+                    try {
+                        threadPool.execute(admission);
+                    } catch (RejectedExecutionException e) {
+                        pendingAdmissions.remove(admission);
+                        rejectBusy(clientSocket);
+                    }
                 } catch (IOException e) {
                     if (running) {
                         log.error("Erro ao aceitar conexão", e);
@@ -84,7 +275,99 @@ public class TCPServer {
     }
 
     /**
-     * Para servidor
+     * Responde BUSY às conexões paradas na fila de admissão além do prazo,
+     * em vez de deixá-las sem resposta até uma thread liberar
+     */
+    private void expireAdmissions() {
+        long now = System.currentTimeMillis();
+        for (PendingAdmission admission : pendingAdmissions) {
+            if (now - admission.queuedAt >= admissionTimeoutMs && admission.claim()) {
+                rejectBusy(admission.socket);
+            }
+        }
+    }
+
+    /**
+     * Conexão aceita aguardando thread do pool; quem a reivindicar primeiro
+     * (worker ou expiração) decide se ela é atendida ou recebe BUSY
+     */
+    private class PendingAdmission implements Runnable {
+        private final Socket socket;
+        private final ClientHandler handler;
+        private final long queuedAt = System.currentTimeMillis();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingAdmission(Socket socket, ClientHandler handler) {
+            this.socket = socket;
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            if (claim()) {
+                handler.run();
+            }
+        }
+
+        boolean claim() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingAdmissions.remove(this);
+            return true;
+        }
+    }
+
+    /**
+     * Responde BUSY e fecha conexão que excede a capacidade do servidor
+     */
+    private void rejectBusy(Socket clientSocket) {
+        log.warn("Conexão de {} rejeitada: servidor ocupado", clientSocket.getInetAddress());
+        try {
+            OutputStream out = clientSocket.getOutputStream();
+            out.write(Protocol.encodeResponseBytes(Protocol.createBusy(null, busyRetryAfterMs)));
+            out.flush();
+        } catch (IOException e) {
+            log.debug("Erro ao enviar BUSY: {}", e.getMessage());
+        } finally {
+            try {
+                clientSocket.close();
+            } catch (IOException e) {
+                log.error("Erro ao fechar socket", e);
+            }
+        }
+    }
+
+    /**
+     * Inicia servidor no modo NIO: poucas threads de I/O multiplexam as
+     * conexões e o pool de threads executa apenas os comandos
+     */
+    private void startNio() {
+        try {
+            threadPool = TcpExecutors.create(executor, threads, "TCP-Worker");
+            nioServer = new NioServer(port, ioThreads, dispatcher, connectionRegistry,
+                    idleMonitor, connectionSettings, threadPool);
+            running = true;
+
+            logStarted();
+            nioServer.start();
+        } catch (IOException e) {
+            log.error("Erro ao iniciar servidor TCP/IP (NIO)", e);
+        }
+    }
+
+    private void logStarted() {
+        log.info("===========================================");
+        log.info("Servidor TCP/IP iniciado na porta {} (modo {}, executor {}, max-in-flight {})",
+                port, mode, executor, maxInFlight);
+        log.info("Aguardando conexões...");
+        log.info("===========================================");
+    }
+
+    /**
+     * Para servidor com drain: deixa de aceitar conexões, avisa os clientes
+     * com SERVER_DRAINING, espera os comandos em andamento (até o prazo) e só
+     * então fecha as conexões
      */
     @PreDestroy
     public void stop() {
@@ -95,8 +378,31 @@ public class TCPServer {
                 serverSocket.close();
             }
 
-            if (threadPool != null) {
-                threadPool.shutdown();
+            if (nioServer != null) {
+                nioServer.stopAccepting();
+            }
+
+            drain();
+
+            if (nioServer != null) {
+                nioServer.stop();
+            }
+
+            shutdownPool(threadPool);
+            shutdownPool(commandPool);
+
+            if (maintenance != null) {
+                maintenance.shutdownNow();
+            }
+            if (sessionEndedListener != null) {
+                sessionManager.removeInvalidationListener(sessionEndedListener);
+            }
+
+            if (timer != null) {
+                timer.stop();
+            }
+            if (writerPool != null) {
+                writerPool.shutdownNow();
             }
 
             log.info("Servidor TCP/IP finalizado");
@@ -105,6 +411,65 @@ public class TCPServer {
         }
     }
 
+    private void drain() {
+        if (dispatcher == null) {
+            return;
+        }
+        dispatcher.setDraining(true);
+
+        List<TcpConnection> connections = connectionRegistry.getConnections();
+        if (!connections.isEmpty()) {
+            log.info("Drenando {} conexões (prazo {} ms)", connections.size(), drainTimeoutMs);
+        }
+        for (TcpConnection connection : connections) {
+            long retryAfter = 1000 + ThreadLocalRandom.current().nextLong(Math.max(1, reconnectJitterMs));
+            connection.send(Protocol.createDraining(drainTimeoutMs, retryAfter));
+        }
+
+        long deadline = System.currentTimeMillis() + drainTimeoutMs;
+        try {
+            while (System.currentTimeMillis() < deadline && hasPendingWork()) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (hasPendingWork()) {
+            log.warn("Prazo de drain esgotado com {} comandos em andamento", dispatcher.getActiveCommands());
+        }
+        for (TcpConnection connection : connectionRegistry.getConnections()) {
+            connection.close();
+        }
+    }
+
+    private boolean hasPendingWork() {
+        if (dispatcher.getActiveCommands() > 0) {
+            return true;
+        }
+        for (TcpConnection connection : connectionRegistry.getConnections()) {
+            if (!connection.getOutbound().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void shutdownPool(ExecutorService pool) {
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Verifica se servidor está rodando
      */
@@ -112,6 +477,39 @@ public class TCPServer {
         return running;
     }
 
+    /**
+     * Conexão para uma sessão do TCPBridge no mesmo processo, atendida pelo
+     * mesmo dispatcher dos sockets; null antes da inicialização
+     */
+    public BridgeConnection openBridgeConnection(WebSocketSession session) {
+        if (dispatcher == null) {
+            return null;
+        }
+        return new BridgeConnection(session, dispatcher, connectionRegistry, connectionSettings, writerPool);
+    }
+
+    /**
+     * Limite tcp.server.max-connections atingido; sessões do bridge contam
+     * junto com os sockets e com as conexões na fila de admissão
+     */
+    public boolean isFull() {
+        return connectionRegistry.size() + pendingAdmissions.size() >= maxConnections;
+    }
+
+    /**
+     * Tempo sugerido ao cliente recusado por excesso de conexões
+     */
+    public long getBusyRetryAfterMs() {
+        return busyRetryAfterMs;
+    }
+
+    /**
+     * Conexões abertas (para monitoramento)
+     */
+    public ConnectionRegistry getConnectionRegistry() {
+        return connectionRegistry;
+    }
+
     /**
      * Retorna porta do servidor
      */
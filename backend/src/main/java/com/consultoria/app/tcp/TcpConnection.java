@@ -0,0 +1,37 @@
+package com.consultoria.app.tcp;
+
+/**
+ * Visão comum de uma conexão TCP aberta, nos modos bloqueante e NIO
+ */
+public interface TcpConnection {
+
+    String getId();
+
+    String getRemoteAddress();
+
+    long getConnectedAt();
+
+    /** Comandos em execução nesta conexão */
+    int getInFlight();
+
+    OutboundQueue getOutbound();
+
+    /** Instante do último frame recebido */
+    long getLastActivity();
+
+    boolean isOpen();
+
+    /** Envia frame não solicitado (ex.: PING); pode ser chamado de qualquer thread */
+    void send(Protocol.Response response);
+
+    /**
+     * Enfileira frame não solicitado (EVENT) sem escrever no socket pela
+     * thread chamadora; a escrita fica com o caminho de saída da conexão
+     */
+    default void sendAsync(Protocol.Response response) {
+        send(response);
+    }
+
+    /** Fecha a conexão; pode ser chamado de qualquer thread */
+    void close();
+}
@@ -0,0 +1,96 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábrica dos executores usados pelo servidor TCP.
+ * "platform" = pool fixo de threads; "virtual" = uma virtual thread por
+ * tarefa (requer Java 21+, ver profile maven "virtual-threads").
+ */
+public final class TcpExecutors {
+    private static final Logger log = LoggerFactory.getLogger(TcpExecutors.class);
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private TcpExecutors() {
+    }
+
+    /**
+     * Cria executor do tipo informado. Se virtual threads não estiverem
+     * disponíveis na JVM, usa o pool de plataforma.
+     */
+    public static ExecutorService create(String kind, int threads, String namePrefix) {
+        if (VIRTUAL.equalsIgnoreCase(kind)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            log.warn("Virtual threads indisponíveis nesta JVM ({}); usando pool de {} threads",
+                    System.getProperty("java.version"), threads);
+        }
+        return Executors.newFixedThreadPool(threads, namedThreadFactory(namePrefix));
+    }
+
+    /**
+     * Como {@link #create}, mas o pool de plataforma tem fila limitada e
+     * rejeita tarefas (RejectedExecutionException) quando ela enche.
+     * Virtual threads não têm fila: cada tarefa ganha sua thread.
+     */
+    public static ExecutorService createBounded(String kind, int threads, int queueCapacity, String namePrefix) {
+        if (VIRTUAL.equalsIgnoreCase(kind) && virtualThreadsAvailable()) {
+            return create(kind, threads, namePrefix);
+        }
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)),
+                namedThreadFactory(namePrefix), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Verifica se a JVM atual suporta virtual threads
+     */
+    public static boolean virtualThreadsAvailable() {
+        return findVirtualFactoryMethod() != null;
+    }
+
+    public static ThreadFactory namedThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // O projeto compila para Java 8, então a API de virtual threads é acessada via reflexão
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = findVirtualFactoryMethod();
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Falha ao criar executor de virtual threads", e);
+            return null;
+        }
+    }
+
+    private static Method findVirtualFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.consultoria.app.tcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sessão WebSocket cujos envios não bloqueiam quem chama: sendMessage põe
+ * a mensagem numa fila ordenada, contada no OutboundQueue da sessão, e uma
+ * thread do executor a escreve. Um navegador parado trava só essa thread;
+ * a fila acima do limite fecha a sessão na hora, e a escrita parada
+ * (writeStartedAt) fica visível para quem verifica o prazo de envio.
+ */
+public class WebSocketSender extends WebSocketSessionDecorator {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketSender.class);
+
+    private final OutboundQueue outbound;
+    private final Executor executor;
+    private final Runnable onFailure;
+    private final Deque<Queued> pending = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /**
+     * @param onFailure chamado quando a fila passa do limite ou a escrita falha
+     */
+    public WebSocketSender(WebSocketSession session, OutboundQueue outbound, Executor executor, Runnable onFailure) {
+        super(session);
+        this.outbound = outbound;
+        this.executor = executor;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Enfileira a mensagem e agenda a escrita se ninguém estiver escrevendo
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (!isOpen()) {
+            return;
+        }
+        // Tamanho calculado uma vez: TextMessage criada de String recodifica a cada chamada
+        Queued queued = new Queued(message, message.getPayloadLength());
+        synchronized (pending) {
+            if (!outbound.reserve(queued.bytes)) {
+                log.warn("Fila de envio da sessão {} excedeu o limite", getId());
+                onFailure.run();
+                return;
+            }
+            pending.add(queued);
+        }
+        if (draining.get()) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            onFailure.run();
+        }
+    }
+
+    /**
+     * Descarta o que não foi enviado (sessão fechada)
+     */
+    public void clear() {
+        synchronized (pending) {
+            pending.clear();
+            outbound.clear();
+        }
+    }
+
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    private void drain() {
+        while (hasPending() && draining.compareAndSet(false, true)) {
+            try {
+                Queued queued;
+                while ((queued = poll()) != null) {
+                    // Cada mensagem renova a marca; parada além do prazo, a sessão é fechada
+                    outbound.writeStarted();
+                    getDelegate().sendMessage(queued.message);
+                    outbound.release(queued.bytes);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Erro ao enviar para WebSocket {}: {}", getId(), e.getMessage());
+                clear();
+                onFailure.run();
+                return;
+            } finally {
+                outbound.writeFinished();
+                draining.set(false);
+            }
+        }
+    }
+
+    private boolean hasPending() {
+        synchronized (pending) {
+            return !pending.isEmpty();
+        }
+    }
+
+    private Queued poll() {
+        synchronized (pending) {
+            return pending.poll();
+        }
+    }
+
+    private static class Queued {
+        final WebSocketMessage<?> message;
+        final int bytes;
+
+        Queued(WebSocketMessage<?> message, int bytes) {
+            this.message = message;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -4,13 +4,16 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.UserRepository;
 import com.consultoria.app.tcp.Protocol;
 import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.SessionTickets;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
 /**
- * Handler para comandos de autenticação (LOGIN, REGISTER, LOGOUT)
+ * Handler para comandos de autenticação (LOGIN, REGISTER, LOGOUT, RESUME).
+ * Com "resumeTicket": true em data, LOGIN e REGISTER devolvem também o
+ * ticket que RESUME aceita em outro servidor (failover do bridge multiplexed).
  */
 @Component
 public class AuthCommandHandler implements CommandHandler {
@@ -18,6 +21,9 @@ public class AuthCommandHandler implements CommandHandler {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SessionTickets sessionTickets;
+
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
     private static final String COMMAND_TYPE = "AUTH";
 
@@ -26,33 +32,10 @@ public class AuthCommandHandler implements CommandHandler {
         return COMMAND_TYPE;
     }
 
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
-
-        if (data == null || !data.has("action")) {
-            return Protocol.createError(message.getRequestId(),
-                    "Campo 'action' obrigatório (LOGIN, REGISTER, LOGOUT)");
-        }
-
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "LOGIN":
-                return handleLogin(message, sessionManager);
-            case "REGISTER":
-                return handleRegister(message, sessionManager);
-            case "LOGOUT":
-                return handleLogout(message, sessionManager);
-            default:
-                return Protocol.createError(message.getRequestId(),
-                        "Action inválida: " + action);
-        }
-    }
-
     /**
      * Processa login
      */
+    @CommandAction("LOGIN")
     private Protocol.Response handleLogin(Protocol.Message message, SessionManager sessionManager) {
         JsonObject data = message.getData();
 
@@ -90,6 +73,7 @@ public class AuthCommandHandler implements CommandHandler {
         if (user.getProfilePhotoUrl() != null) {
             responseData.addProperty("profilePhotoUrl", user.getProfilePhotoUrl());
         }
+        addResumeTicket(data, responseData, sessionId, user);
 
         return Protocol.createSuccess(message.getRequestId(),
                 "Login realizado com sucesso", responseData);
@@ -98,6 +82,7 @@ public class AuthCommandHandler implements CommandHandler {
     /**
      * Processa registro
      */
+    @CommandAction("REGISTER")
     private Protocol.Response handleRegister(Protocol.Message message, SessionManager sessionManager) {
         JsonObject data = message.getData();
 
@@ -145,6 +130,7 @@ public class AuthCommandHandler implements CommandHandler {
         responseData.addProperty("name", user.getName());
         responseData.addProperty("email", user.getEmail());
         responseData.addProperty("role", user.getRole().toString());
+        addResumeTicket(data, responseData, sessionId, user);
 
         return Protocol.createSuccess(message.getRequestId(),
                 "Registro realizado com sucesso", responseData);
@@ -153,6 +139,7 @@ public class AuthCommandHandler implements CommandHandler {
     /**
      * Processa logout
      */
+    @CommandAction("LOGOUT")
     private Protocol.Response handleLogout(Protocol.Message message, SessionManager sessionManager) {
         String sessionId = message.getSessionId();
 
@@ -165,6 +152,36 @@ public class AuthCommandHandler implements CommandHandler {
                 "Logout realizado com sucesso", responseData);
     }
 
+    /**
+     * Retoma neste servidor uma sessão criada em outro, pelo ticket do login.
+     * O sessionId continua o mesmo; o navegador não precisa logar de novo.
+     */
+    @CommandAction("RESUME")
+    private Protocol.Response handleResume(Protocol.Message message, SessionManager sessionManager) {
+        JsonObject data = message.getData();
+        SessionTickets.Ticket ticket = data.has("ticket")
+                ? sessionTickets.verify(data.get("ticket").getAsString()) : null;
+        if (ticket == null) {
+            return Protocol.createError(message.getRequestId(), "Sessão inválida");
+        }
+
+        User user = userRepository.findById(ticket.getUserId()).orElse(null);
+        if (user == null || !sessionManager.resumeSession(ticket.getSessionId(), user)) {
+            return Protocol.createError(message.getRequestId(), "Sessão inválida");
+        }
+
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("sessionId", ticket.getSessionId());
+        return Protocol.createSuccess(message.getRequestId(), "Sessão retomada", responseData);
+    }
+
+    private void addResumeTicket(JsonObject data, JsonObject responseData, String sessionId, User user) {
+        if (data.has("resumeTicket") && data.get("resumeTicket").getAsBoolean()) {
+            responseData.addProperty("resumeTicket", sessionTickets.issue(sessionId, user.getId()));
+            responseData.addProperty("resumeTicketExpiresAt", sessionTickets.expiresAt());
+        }
+    }
+
     /**
      * Verifica senha
      */
@@ -0,0 +1,157 @@
+package com.consultoria.app.tcp.handler;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.CommandRouter;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executa vários comandos em uma única ida e volta.
+ * Formato: {"type": "BATCH", "sessionId": "...", "data": {"transactional": false,
+ * "messages": [{"type": "REQUEST", "requestId": "...", "data": {...}}, ...]}}
+ * A sessão é validada uma vez, na entrada (sessão inválida rejeita o lote
+ * inteiro), e o usuário resolvido segue com os sub-comandos, que rodam na
+ * ordem recebida sem consultar a sessão de novo. Cada sub-comando passa pelo
+ * bulkhead do seu tipo; lotado, recebe BUSY no resultado. O lote ocupa uma
+ * permissão do limite global, como a thread que executa os sub-comandos um
+ * de cada vez. Com transactional=true tudo roda em uma transação, que é
+ * revertida no primeiro sub-comando com erro.
+ */
+@Component
+public class BatchCommandHandler implements CommandHandler {
+    public static final String BATCH = "BATCH";
+
+    @Autowired
+    private CommandRouter commandRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${tcp.server.batch.max-messages:50}")
+    private int maxMessages;
+
+    @Value("${tcp.server.busy.retry-after-ms:1000}")
+    private long busyRetryAfterMs;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void initialize() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public String getCommandType() {
+        return BATCH;
+    }
+
+    @Override
+    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+        User user = sessionManager.validateSession(message.getSessionId());
+        if (user == null) {
+            return Protocol.createError(message.getRequestId(), "Sessão inválida");
+        }
+
+        JsonObject data = message.getData();
+        if (data == null || !data.has("messages") || !data.get("messages").isJsonArray()) {
+            return Protocol.createError(message.getRequestId(), "Lote sem mensagens");
+        }
+
+        JsonArray messages = data.getAsJsonArray("messages");
+        if (messages.size() > maxMessages) {
+            return Protocol.createError(message.getRequestId(),
+                    "Lote excede o limite de " + maxMessages + " mensagens");
+        }
+
+        boolean transactional = data.has("transactional") && data.get("transactional").getAsBoolean();
+        if (!transactional) {
+            JsonArray results = new JsonArray();
+            for (JsonElement element : messages) {
+                results.add(Protocol.toJsonTree(execute(element, message, user, sessionManager)));
+            }
+            return createResult(message.getRequestId(), results, false);
+        }
+
+        JsonArray results = new JsonArray();
+        Protocol.Response failed = transactionTemplate.execute(status -> {
+            for (JsonElement element : messages) {
+                Protocol.Response response = execute(element, message, user, sessionManager);
+                results.add(Protocol.toJsonTree(response));
+                if (!response.isSuccess()) {
+                    status.setRollbackOnly();
+                    return response;
+                }
+            }
+            return null;
+        });
+
+        if (failed != null) {
+            Protocol.Response response = Protocol.createError(message.getRequestId(),
+                    "Lote revertido: " + failed.getMessage());
+            response.setData(createData(results, true));
+            return response;
+        }
+        return createResult(message.getRequestId(), results, true);
+    }
+
+    /**
+     * Executa um sub-comando com a sessão, o usuário e a conexão do lote
+     */
+    private Protocol.Response execute(JsonElement element, Protocol.Message batch, User user,
+            SessionManager sessionManager) {
+        Protocol.Message subMessage = Protocol.decode(element);
+        if (!Protocol.isValid(subMessage)) {
+            return Protocol.createError(subMessage != null ? subMessage.getRequestId() : "unknown",
+                    "Mensagem inválida");
+        }
+        subMessage.setSessionId(batch.getSessionId());
+        subMessage.setConnection(batch.getConnection());
+        subMessage.setUser(user);
+        if (subMessage.getData() == null) {
+            subMessage.setData(new JsonObject());
+        }
+        // Resposta em partes não cabe dentro do resultado do lote
+        subMessage.getData().remove("chunkSize");
+
+        // Lote dentro de lote não é permitido
+        if (BATCH.equals(subMessage.getType())) {
+            return Protocol.createError(subMessage.getRequestId(),
+                    "Comando desconhecido: " + subMessage.getType());
+        }
+
+        // Mesmo bulkhead do comando avulso: um lote de FILE não contorna o limite do tipo
+        Semaphore bulkhead = commandRouter.getBulkhead(subMessage.getType());
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            return Protocol.createBusy(subMessage.getRequestId(), busyRetryAfterMs);
+        }
+        try {
+            return commandRouter.route(subMessage, sessionManager);
+        } finally {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+        }
+    }
+
+    private Protocol.Response createResult(String requestId, JsonArray results, boolean transactional) {
+        return Protocol.createSuccess(requestId, "Lote processado", createData(results, transactional));
+    }
+
+    private JsonObject createData(JsonArray results, boolean transactional) {
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("transactional", transactional);
+        responseData.add("results", results);
+        return responseData;
+    }
+}
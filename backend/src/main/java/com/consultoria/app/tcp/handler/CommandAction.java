@@ -0,0 +1,24 @@
+package com.consultoria.app.tcp.handler;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca o método de um CommandHandler que trata uma action
+ * ({"type": "...", "data": {"action": "LIST"}}). A tabela de rotas é
+ * montada uma vez na inicialização pelo CommandRouter.
+ *
+ * Assinaturas aceitas:
+ * (Protocol.Message, User) - sessão validada antes pelo roteador;
+ * (Protocol.Message, SessionManager) - ações sem sessão (ex.: LOGIN).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CommandAction {
+    /** Nome da action, em maiúsculas */
+    String value();
+}
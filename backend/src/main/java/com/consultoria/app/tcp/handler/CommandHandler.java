@@ -1,21 +1,32 @@
 package com.consultoria.app.tcp.handler;
 
+import com.consultoria.app.model.User;
 import com.consultoria.app.tcp.Protocol;
 import com.consultoria.app.tcp.SessionManager;
-import com.google.gson.JsonObject;
 
 /**
  * Interface base para todos os command handlers
  */
 public interface CommandHandler {
     /**
-     * Processa comando e retorna resposta
+     * Processa comando e retorna resposta. Handlers com métodos
+     * {@link CommandAction} são roteados por action e não precisam sobrescrever.
      * 
      * @param message        Mensagem recebida
      * @param sessionManager Gerenciador de sessões
      * @return Resposta a ser enviada ao cliente
      */
-    Protocol.Response handle(Protocol.Message message, SessionManager sessionManager);
+    default Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+        return Protocol.createError(message.getRequestId(), "Action inválida");
+    }
+
+    /**
+     * Verificação comum a todas as actions que recebem User (ex.: papel
+     * exigido). Retorna a resposta de erro, ou null para seguir.
+     */
+    default Protocol.Response checkAccess(Protocol.Message message, User user) {
+        return null;
+    }
 
     /**
      * Retorna o tipo de comando que este handler processa
@@ -5,14 +5,16 @@ import com.consultoria.app.model.Request;
 import com.consultoria.app.model.User;
 import com.consultoria.app.repository.EvaluationRepository;
 import com.consultoria.app.repository.RequestRepository;
+import com.consultoria.app.tcp.ChunkedResponses;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
-import com.google.gson.JsonArray;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.consultoria.app.tcp.payload.EvaluationListPayload;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Component
@@ -24,33 +26,18 @@ public class EvaluationCommandHandler implements CommandHandler {
     @Autowired
     private RequestRepository requestRepository;
 
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private ChunkedResponses chunkedResponses;
+
     @Override
     public String getCommandType() {
         return "EVALUATION";
     }
 
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "SUBMIT":
-                return handleSubmit(message, user);
-            case "GET":
-                return handleGet(message, user);
-            case "LIST_CONSULTANT":
-                return handleListConsultant(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
-    }
-
+    @CommandAction("SUBMIT")
     private Protocol.Response handleSubmit(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
@@ -98,12 +85,25 @@ public class EvaluationCommandHandler implements CommandHandler {
 
         evaluation = evaluationRepository.save(evaluation);
 
+        if (request.getConsultant() != null) {
+            JsonObject eventData = new JsonObject();
+            eventData.addProperty("id", evaluation.getId());
+            eventData.addProperty("rating", evaluation.getRating());
+            eventData.addProperty("comment", evaluation.getComment());
+            eventData.addProperty("date", evaluation.getEvaluationDate().toString());
+            eventData.addProperty("clientName", user.getName());
+            subscriptionRegistry.publish(
+                    SubscriptionRegistry.consultantEvaluationsTopic(request.getConsultant().getId()),
+                    "NEW", eventData);
+        }
+
         JsonObject responseData = new JsonObject();
         responseData.addProperty("evaluationId", evaluation.getId());
 
         return Protocol.createSuccess(message.getRequestId(), "Avaliação enviada", responseData);
     }
 
+    @CommandAction("GET")
     private Protocol.Response handleGet(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long requestId = data.get("requestId").getAsLong();
@@ -130,31 +130,42 @@ public class EvaluationCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Avaliação obtida", responseData);
     }
 
+    @CommandAction("LIST_CONSULTANT")
     private Protocol.Response handleListConsultant(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long consultantId = data.has("consultantId") ? data.get("consultantId").getAsLong() : user.getId();
 
-        List<Evaluation> evaluations = evaluationRepository.findByRequestConsultantId(consultantId);
-
-        JsonArray evalsArray = new JsonArray();
-        double totalRating = 0;
-
-        for (Evaluation eval : evaluations) {
-            JsonObject evalObj = new JsonObject();
-            evalObj.addProperty("id", eval.getId());
-            evalObj.addProperty("rating", eval.getRating());
-            evalObj.addProperty("comment", eval.getComment());
-            evalObj.addProperty("date", eval.getEvaluationDate().toString());
-            evalObj.addProperty("clientName", eval.getUser().getName());
-            evalsArray.add(evalObj);
-            totalRating += eval.getRating();
+        if (chunkedResponses.isRequested(message)) {
+            // Cada frame leva os totais acumulados; os do frame final valem para a lista inteira
+            RatingSummary summary = new RatingSummary();
+            return chunkedResponses.stream(message, "Lista obtida",
+                    (afterId, page) -> evaluationRepository.findByRequestConsultantIdAndIdGreaterThanOrderByIdAsc(
+                            consultantId, afterId, page),
+                    Evaluation::getId, summary::add);
         }
 
-        JsonObject responseData = new JsonObject();
-        responseData.add("evaluations", evalsArray);
-        responseData.addProperty("totalEvaluations", evaluations.size());
-        responseData.addProperty("averageRating", evaluations.isEmpty() ? 0 : totalRating / evaluations.size());
+        List<Evaluation> evaluations = evaluationRepository.findByRequestConsultantId(consultantId);
 
-        return Protocol.createSuccess(message.getRequestId(), "Lista obtida", responseData);
+        return Protocol.createTypedSuccess(message.getRequestId(), "Lista obtida", new RatingSummary().add(evaluations));
+    }
+
+    /**
+     * Monta o payload da listagem somando a média das avaliações já vistas
+     */
+    private static class RatingSummary {
+        private int count = 0;
+        private double totalRating = 0;
+
+        EvaluationListPayload add(List<Evaluation> evaluations) {
+            List<EvaluationListPayload.Item> items = new ArrayList<>(evaluations.size());
+            for (Evaluation eval : evaluations) {
+                items.add(new EvaluationListPayload.Item(eval.getId(), eval.getRating(), eval.getComment(),
+                        eval.getEvaluationDate().toString(), eval.getUser().getName()));
+                totalRating += eval.getRating();
+            }
+            count += evaluations.size();
+
+            return new EvaluationListPayload(items, count, count == 0 ? 0 : totalRating / count);
+        }
     }
 }
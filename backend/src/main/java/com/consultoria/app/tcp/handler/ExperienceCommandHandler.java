@@ -6,7 +6,6 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.ConsultantProfileRepository;
 import com.consultoria.app.repository.ExperienceRepository;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -33,33 +32,14 @@ public class ExperienceCommandHandler implements CommandHandler {
     }
 
     @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
+    public Protocol.Response checkAccess(Protocol.Message message, User user) {
         if (user.getRole() != User.Role.CONSULTANT) {
             return Protocol.createError(message.getRequestId(), "Apenas consultores podem gerenciar experiências");
         }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "ADD":
-                return handleAdd(message, user);
-            case "UPDATE":
-                return handleUpdate(message, user);
-            case "DELETE":
-                return handleDelete(message, user);
-            case "LIST":
-                return handleList(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+        return null;
     }
 
+    @CommandAction("ADD")
     private Protocol.Response handleAdd(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
@@ -97,6 +77,7 @@ public class ExperienceCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Experiência adicionada", responseData);
     }
 
+    @CommandAction("UPDATE")
     private Protocol.Response handleUpdate(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long expId = data.get("id").getAsLong();
@@ -125,6 +106,7 @@ public class ExperienceCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Experiência atualizada", new JsonObject());
     }
 
+    @CommandAction("DELETE")
     private Protocol.Response handleDelete(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long expId = data.get("id").getAsLong();
@@ -139,6 +121,7 @@ public class ExperienceCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Experiência removida", new JsonObject());
     }
 
+    @CommandAction("LIST")
     private Protocol.Response handleList(Protocol.Message message, User user) {
         ConsultantProfile profile = consultantProfileRepository.findByUserId(user.getId()).orElse(null);
 
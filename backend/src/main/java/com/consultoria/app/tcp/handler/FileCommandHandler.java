@@ -6,8 +6,8 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.ProjectFileRepository;
 import com.consultoria.app.repository.RequestRepository;
 import com.consultoria.app.service.FileStorageService;
+import com.consultoria.app.tcp.ChunkedResponses;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,39 +28,21 @@ public class FileCommandHandler implements CommandHandler {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private ChunkedResponses chunkedResponses;
+
     @Override
     public String getCommandType() {
         return "FILE";
     }
 
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "UPLOAD":
-                return handleUpload(message, user);
-            case "LIST":
-                return handleList(message, user);
-            case "DOWNLOAD":
-                return handleDownload(message, user);
-            case "DELETE":
-                return handleDelete(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
-    }
-
+    @CommandAction("UPLOAD")
     private Protocol.Response handleUpload(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
-        if (!data.has("requestId") || !data.has("fileData") || !data.has("fileName")) {
+        // Conteúdo vem em base64 (fileData) ou cru na seção binária do frame
+        byte[] binary = message.getBinary();
+        if (!data.has("requestId") || (binary == null && !data.has("fileData")) || !data.has("fileName")) {
             return Protocol.createError(message.getRequestId(), "Dados insuficientes");
         }
 
@@ -78,21 +60,31 @@ public class FileCommandHandler implements CommandHandler {
         }
 
         try {
-            String fileData = data.get("fileData").getAsString();
             String fileName = data.get("fileName").getAsString();
-
-            if (!fileStorageService.validateFileSize(fileData)) {
-                return Protocol.createError(message.getRequestId(), "Arquivo muito grande (máx 10MB)");
+            String savedFile;
+            long fileSize;
+
+            if (binary != null) {
+                if (!fileStorageService.validateFileSize(binary.length)) {
+                    return Protocol.createError(message.getRequestId(), "Arquivo muito grande (máx 10MB)");
+                }
+                savedFile = fileStorageService.saveFile(binary, fileName);
+                fileSize = binary.length;
+            } else {
+                String fileData = data.get("fileData").getAsString();
+                if (!fileStorageService.validateFileSize(fileData)) {
+                    return Protocol.createError(message.getRequestId(), "Arquivo muito grande (máx 10MB)");
+                }
+                savedFile = fileStorageService.saveFile(fileData, fileName);
+                fileSize = fileData.length() * 3 / 4; // Tamanho aproximado
             }
 
-            String savedFile = fileStorageService.saveFile(fileData, fileName);
-
             ProjectFile projectFile = new ProjectFile();
             projectFile.setRequest(request);
             projectFile.setUploadedBy(user);
             projectFile.setFileName(fileName);
             projectFile.setFilePath(savedFile);
-            projectFile.setFileSize((long) (fileData.length() * 3 / 4)); // Tamanho aproximado
+            projectFile.setFileSize(fileSize);
             projectFile.setUploadDate(LocalDateTime.now());
 
             projectFile = projectFileRepository.save(projectFile);
@@ -108,12 +100,24 @@ public class FileCommandHandler implements CommandHandler {
         }
     }
 
+    @CommandAction("LIST")
     private Protocol.Response handleList(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long requestId = data.get("requestId").getAsLong();
 
+        if (chunkedResponses.isRequested(message)) {
+            return chunkedResponses.stream(message, "Lista obtida",
+                    (afterId, page) -> projectFileRepository.findByRequestIdAndIdGreaterThanOrderByIdAsc(
+                            requestId, afterId, page),
+                    ProjectFile::getId, this::toListData);
+        }
+
         List<ProjectFile> files = projectFileRepository.findByRequestId(requestId);
 
+        return Protocol.createSuccess(message.getRequestId(), "Lista obtida", toListData(files));
+    }
+
+    private JsonObject toListData(List<ProjectFile> files) {
         JsonArray filesArray = new JsonArray();
         for (ProjectFile file : files) {
             JsonObject fileObj = new JsonObject();
@@ -127,10 +131,10 @@ public class FileCommandHandler implements CommandHandler {
 
         JsonObject responseData = new JsonObject();
         responseData.add("files", filesArray);
-
-        return Protocol.createSuccess(message.getRequestId(), "Lista obtida", responseData);
+        return responseData;
     }
 
+    @CommandAction("DOWNLOAD")
     private Protocol.Response handleDownload(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long fileId = data.get("fileId").getAsLong();
@@ -141,10 +145,20 @@ public class FileCommandHandler implements CommandHandler {
         }
 
         try {
-            String base64 = fileStorageService.getFileAsBase64(file.getFilePath());
-
             JsonObject responseData = new JsonObject();
             responseData.addProperty("fileName", file.getFileName());
+
+            // Com "binary": true o conteúdo vai cru na seção binária (requer HELLO com capability binary)
+            if (data.has("binary") && data.get("binary").getAsBoolean()) {
+                byte[] content = fileStorageService.readFile(file.getFilePath());
+                responseData.addProperty("fileSize", content.length);
+
+                Protocol.Response response = Protocol.createSuccess(message.getRequestId(), "Arquivo obtido", responseData);
+                response.setBinary(content);
+                return response;
+            }
+
+            String base64 = fileStorageService.getFileAsBase64(file.getFilePath());
             responseData.addProperty("fileData", base64);
 
             return Protocol.createSuccess(message.getRequestId(), "Arquivo obtido", responseData);
@@ -154,6 +168,7 @@ public class FileCommandHandler implements CommandHandler {
         }
     }
 
+    @CommandAction("DELETE")
     private Protocol.Response handleDelete(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long fileId = data.get("fileId").getAsLong();
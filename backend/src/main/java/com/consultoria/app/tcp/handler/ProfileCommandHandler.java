@@ -4,7 +4,6 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.UserRepository;
 import com.consultoria.app.service.FileStorageService;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -29,36 +28,10 @@ public class ProfileCommandHandler implements CommandHandler {
         return COMMAND_TYPE;
     }
 
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        // Valida sessão
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida ou expirada");
-        }
-
-        JsonObject data = message.getData();
-        if (data == null || !data.has("action")) {
-            return Protocol.createError(message.getRequestId(), "Campo 'action' obrigatório");
-        }
-
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "UPDATE":
-                return handleUpdate(message, user);
-            case "UPLOAD_PHOTO":
-                return handleUploadPhoto(message, user);
-            case "GET":
-                return handleGet(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida: " + action);
-        }
-    }
-
     /**
      * Atualiza perfil do usuário
      */
+    @CommandAction("UPDATE")
     private Protocol.Response handleUpdate(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
@@ -94,19 +67,24 @@ public class ProfileCommandHandler implements CommandHandler {
     /**
      * Upload de foto de perfil
      */
+    @CommandAction("UPLOAD_PHOTO")
     private Protocol.Response handleUploadPhoto(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
-        if (!data.has("photoData") || !data.has("fileName")) {
+        // Foto em base64 (photoData) ou crua na seção binária / byte string CBOR
+        byte[] binary = message.getBinary();
+        if ((binary == null && !data.has("photoData")) || !data.has("fileName")) {
             return Protocol.createError(message.getRequestId(),
                     "photoData e fileName obrigatórios");
         }
 
-        String base64Photo = data.get("photoData").getAsString();
+        String base64Photo = binary == null ? data.get("photoData").getAsString() : null;
         String fileName = data.get("fileName").getAsString();
 
         // Valida tamanho
-        if (!fileStorageService.validateFileSize(base64Photo)) {
+        boolean sizeOk = binary != null ? fileStorageService.validateFileSize(binary.length)
+                : fileStorageService.validateFileSize(base64Photo);
+        if (!sizeOk) {
             return Protocol.createError(message.getRequestId(),
                     "Arquivo muito grande (máximo 10MB)");
         }
@@ -118,7 +96,8 @@ public class ProfileCommandHandler implements CommandHandler {
             }
 
             // Salva nova foto
-            String savedFileName = fileStorageService.saveFile(base64Photo, fileName);
+            String savedFileName = binary != null ? fileStorageService.saveFile(binary, fileName)
+                    : fileStorageService.saveFile(base64Photo, fileName);
             user.setProfilePhotoUrl(savedFileName);
             user = userRepository.save(user);
 
@@ -137,6 +116,7 @@ public class ProfileCommandHandler implements CommandHandler {
     /**
      * Obtém dados do perfil
      */
+    @CommandAction("GET")
     private Protocol.Response handleGet(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
@@ -7,7 +7,6 @@ import com.consultoria.app.repository.ConsultantProfileRepository;
 import com.consultoria.app.repository.ConsultantProjectRepository;
 import com.consultoria.app.service.FileStorageService;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,33 +32,14 @@ public class ProjectCommandHandler implements CommandHandler {
     }
 
     @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
+    public Protocol.Response checkAccess(Protocol.Message message, User user) {
         if (user.getRole() != User.Role.CONSULTANT) {
             return Protocol.createError(message.getRequestId(), "Apenas consultores podem gerenciar projetos");
         }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "ADD":
-                return handleAdd(message, user);
-            case "UPDATE":
-                return handleUpdate(message, user);
-            case "DELETE":
-                return handleDelete(message, user);
-            case "LIST":
-                return handleList(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+        return null;
     }
 
+    @CommandAction("ADD")
     private Protocol.Response handleAdd(Protocol.Message message, User user) {
         JsonObject data = message.getData();
 
@@ -99,6 +79,7 @@ public class ProjectCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Projeto adicionado", responseData);
     }
 
+    @CommandAction("UPDATE")
     private Protocol.Response handleUpdate(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long projectId = data.get("id").getAsLong();
@@ -136,6 +117,7 @@ public class ProjectCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Projeto atualizado", new JsonObject());
     }
 
+    @CommandAction("DELETE")
     private Protocol.Response handleDelete(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long projectId = data.get("id").getAsLong();
@@ -155,6 +137,7 @@ public class ProjectCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Projeto removido", new JsonObject());
     }
 
+    @CommandAction("LIST")
     private Protocol.Response handleList(Protocol.Message message, User user) {
         ConsultantProfile profile = consultantProfileRepository.findByUserId(user.getId()).orElse(null);
 
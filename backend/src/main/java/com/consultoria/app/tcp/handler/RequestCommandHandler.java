@@ -3,13 +3,15 @@ package com.consultoria.app.tcp.handler;
 import com.consultoria.app.model.Request;
 import com.consultoria.app.model.User;
 import com.consultoria.app.repository.RequestRepository;
+import com.consultoria.app.tcp.ChunkedResponses;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
-import com.google.gson.JsonArray;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.consultoria.app.tcp.payload.RequestListPayload;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Component
@@ -18,33 +20,18 @@ public class RequestCommandHandler implements CommandHandler {
     @Autowired
     private RequestRepository requestRepository;
 
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private ChunkedResponses chunkedResponses;
+
     @Override
     public String getCommandType() {
         return "REQUEST";
     }
 
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "UPDATE_STATUS":
-                return handleUpdateStatus(message, user);
-            case "UPDATE_PROGRESS":
-                return handleUpdateProgress(message, user);
-            case "LIST":
-                return handleList(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
-    }
-
+    @CommandAction("UPDATE_STATUS")
     private Protocol.Response handleUpdateStatus(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long requestId = data.get("id").getAsLong();
@@ -66,6 +53,7 @@ public class RequestCommandHandler implements CommandHandler {
             Request.RequestStatus status = Request.RequestStatus.valueOf(statusStr.toUpperCase());
             request.setStatus(status);
             requestRepository.save(request);
+            publishChange(request, "STATUS");
 
             return Protocol.createSuccess(message.getRequestId(), "Status atualizado", new JsonObject());
         } catch (IllegalArgumentException e) {
@@ -73,6 +61,7 @@ public class RequestCommandHandler implements CommandHandler {
         }
     }
 
+    @CommandAction("UPDATE_PROGRESS")
     private Protocol.Response handleUpdateProgress(Protocol.Message message, User user) {
         JsonObject data = message.getData();
         Long requestId = data.get("id").getAsLong();
@@ -96,6 +85,7 @@ public class RequestCommandHandler implements CommandHandler {
 
         request.setProgress(progress);
         requestRepository.save(request);
+        publishChange(request, "PROGRESS");
 
         JsonObject responseData = new JsonObject();
         responseData.addProperty("progress", progress);
@@ -103,7 +93,17 @@ public class RequestCommandHandler implements CommandHandler {
         return Protocol.createSuccess(message.getRequestId(), "Progresso atualizado", responseData);
     }
 
+    @CommandAction("LIST")
     private Protocol.Response handleList(Protocol.Message message, User user) {
+        if (chunkedResponses.isRequested(message)) {
+            return chunkedResponses.stream(message, "Lista obtida",
+                    (afterId, page) -> user.getRole() == User.Role.USER
+                            ? requestRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(user.getId(), afterId, page)
+                            : requestRepository.findByConsultantIdAndIdGreaterThanOrderByIdAsc(user.getId(),
+                                    afterId, page),
+                    Request::getId, rows -> toListPayload(rows, user));
+        }
+
         List<Request> requests;
 
         if (user.getRole() == User.Role.USER) {
@@ -112,26 +112,34 @@ public class RequestCommandHandler implements CommandHandler {
             requests = requestRepository.findByConsultantId(user.getId());
         }
 
-        JsonArray requestsArray = new JsonArray();
-        for (Request req : requests) {
-            JsonObject reqObj = new JsonObject();
-            reqObj.addProperty("id", req.getId());
-            reqObj.addProperty("status", req.getStatus().toString());
-            reqObj.addProperty("progress", req.getProgress());
-            reqObj.addProperty("createdAt", req.getCreatedAt().toString());
+        return Protocol.createTypedSuccess(message.getRequestId(), "Lista obtida", toListPayload(requests, user));
+    }
 
+    private RequestListPayload toListPayload(List<Request> requests, User user) {
+        List<RequestListPayload.Item> items = new ArrayList<>(requests.size());
+        for (Request req : requests) {
+            String consultantName = null;
+            String clientName = null;
             if (user.getRole() == User.Role.USER && req.getConsultant() != null) {
-                reqObj.addProperty("consultantName", req.getConsultant().getName());
+                consultantName = req.getConsultant().getName();
             } else if (user.getRole() == User.Role.CONSULTANT) {
-                reqObj.addProperty("clientName", req.getUser().getName());
+                clientName = req.getUser().getName();
             }
 
-            requestsArray.add(reqObj);
+            items.add(new RequestListPayload.Item(req.getId(), req.getStatus().toString(), req.getProgress(),
+                    req.getCreatedAt().toString(), consultantName, clientName));
         }
+        return new RequestListPayload(items);
+    }
 
-        JsonObject responseData = new JsonObject();
-        responseData.add("requests", requestsArray);
-
-        return Protocol.createSuccess(message.getRequestId(), "Lista obtida", responseData);
+    /**
+     * Avisa os assinantes de request:{id} sobre a mudança
+     */
+    private void publishChange(Request request, String event) {
+        JsonObject eventData = new JsonObject();
+        eventData.addProperty("id", request.getId());
+        eventData.addProperty("status", request.getStatus().toString());
+        eventData.addProperty("progress", request.getProgress());
+        subscriptionRegistry.publish(SubscriptionRegistry.requestTopic(request.getId()), event, eventData);
     }
 }
@@ -0,0 +1,107 @@
+package com.consultoria.app.tcp.handler;
+
+import com.consultoria.app.model.Project;
+import com.consultoria.app.model.Request;
+import com.consultoria.app.model.User;
+import com.consultoria.app.repository.ProjectRepository;
+import com.consultoria.app.repository.RequestRepository;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Assina um tópico na conexão atual; a partir daí o servidor envia frames
+ * EVENT sem que o cliente precise consultar de novo.
+ * Formato: {"type": "SUBSCRIBE", "sessionId": "...", "data": {"topic": "request:42"}}
+ */
+@Component
+public class SubscribeCommandHandler implements CommandHandler {
+    private static final Pattern REQUEST_TOPIC = Pattern.compile("request:(\\d+)");
+    private static final Pattern PROJECT_CHAT_TOPIC = Pattern.compile("project:(\\d+):chat");
+    private static final Pattern CONSULTANT_EVALUATIONS_TOPIC = Pattern.compile("consultant:(\\d+):evaluations");
+
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Override
+    public String getCommandType() {
+        return Protocol.SUBSCRIBE;
+    }
+
+    @Override
+    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+        User user = message.getUser() != null ? message.getUser()
+                : sessionManager.validateSession(message.getSessionId());
+        if (user == null) {
+            return Protocol.createError(message.getRequestId(), "Sessão inválida");
+        }
+
+        JsonObject data = message.getData();
+        if (data == null || !data.has("topic")) {
+            return Protocol.createError(message.getRequestId(), "Tópico não informado");
+        }
+        if (message.getConnection() == null) {
+            return Protocol.createError(message.getRequestId(), "Assinatura exige conexão TCP");
+        }
+
+        String topic = data.get("topic").getAsString();
+        String error = authorize(topic, user);
+        if (error != null) {
+            return Protocol.createError(message.getRequestId(), error);
+        }
+
+        // Presa à sessão: logout ou expiração encerram a assinatura
+        if (!subscriptionRegistry.subscribe(message.getConnection(), topic, message.getSessionId())) {
+            return Protocol.createError(message.getRequestId(), "Limite de assinaturas atingido");
+        }
+
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("topic", topic);
+        return Protocol.createSuccess(message.getRequestId(), "Assinatura registrada", responseData);
+    }
+
+    /**
+     * Retorna mensagem de erro, ou null quando o usuário pode assinar o tópico
+     */
+    private String authorize(String topic, User user) {
+        Matcher matcher = REQUEST_TOPIC.matcher(topic);
+        if (matcher.matches()) {
+            Request request = requestRepository.findById(Long.valueOf(matcher.group(1))).orElse(null);
+            if (request == null) {
+                return "Solicitação não encontrada";
+            }
+            boolean hasAccess = request.getUser().getId().equals(user.getId()) ||
+                    (request.getConsultant() != null && request.getConsultant().getId().equals(user.getId()));
+            return hasAccess ? null : "Sem permissão";
+        }
+
+        matcher = PROJECT_CHAT_TOPIC.matcher(topic);
+        if (matcher.matches()) {
+            Project project = projectRepository.findById(Long.valueOf(matcher.group(1))).orElse(null);
+            if (project == null) {
+                return "Projeto não encontrado";
+            }
+            boolean hasAccess = project.getUser().getId().equals(user.getId()) ||
+                    (project.getConsultant() != null && project.getConsultant().getId().equals(user.getId()));
+            return hasAccess ? null : "Sem permissão";
+        }
+
+        // Avaliações de consultores são públicas, como em EVALUATION LIST_CONSULTANT
+        if (CONSULTANT_EVALUATIONS_TOPIC.matcher(topic).matches()) {
+            return null;
+        }
+        return "Tópico inválido";
+    }
+}
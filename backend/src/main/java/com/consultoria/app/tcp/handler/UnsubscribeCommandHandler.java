@@ -0,0 +1,41 @@
+package com.consultoria.app.tcp.handler;
+
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.google.gson.JsonObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cancela uma assinatura feita com SUBSCRIBE na conexão atual.
+ * Formato: {"type": "UNSUBSCRIBE", "data": {"topic": "request:42"}}
+ */
+@Component
+public class UnsubscribeCommandHandler implements CommandHandler {
+
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Override
+    public String getCommandType() {
+        return Protocol.UNSUBSCRIBE;
+    }
+
+    @Override
+    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+        JsonObject data = message.getData();
+        if (data == null || !data.has("topic")) {
+            return Protocol.createError(message.getRequestId(), "Tópico não informado");
+        }
+
+        String topic = data.get("topic").getAsString();
+        if (message.getConnection() != null) {
+            subscriptionRegistry.unsubscribe(message.getConnection(), topic);
+        }
+
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("topic", topic);
+        return Protocol.createSuccess(message.getRequestId(), "Assinatura cancelada", responseData);
+    }
+}
@@ -0,0 +1,119 @@
+package com.consultoria.app.tcp.payload;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dados da resposta de EVALUATION LIST_CONSULTANT, serializados pelo
+ * {@link Adapter} no mesmo formato da árvore JsonObject usada antes:
+ * {"evaluations": [{"id", "rating", "comment", "date", "clientName"}],
+ * "totalEvaluations", "averageRating"}
+ */
+@Data
+@AllArgsConstructor
+public class EvaluationListPayload {
+    private List<Item> evaluations;
+    private int totalEvaluations;
+    private double averageRating;
+
+    @Data
+    @AllArgsConstructor
+    public static class Item {
+        private Long id;
+        private Integer rating;
+        private String comment;
+        private String date;
+        private String clientName;
+    }
+
+    /**
+     * Escreve e lê o formato acima (leitura usada por clientes Java e testes)
+     */
+    public static class Adapter extends TypeAdapter<EvaluationListPayload> {
+        @Override
+        public void write(JsonWriter out, EvaluationListPayload payload) throws IOException {
+            out.beginObject();
+            out.name("evaluations").beginArray();
+            for (Item item : payload.getEvaluations()) {
+                out.beginObject();
+                out.name("id").value(item.getId());
+                out.name("rating").value(item.getRating());
+                out.name("comment").value(item.getComment());
+                out.name("date").value(item.getDate());
+                out.name("clientName").value(item.getClientName());
+                out.endObject();
+            }
+            out.endArray();
+            out.name("totalEvaluations").value(payload.getTotalEvaluations());
+            out.name("averageRating").value(payload.getAverageRating());
+            out.endObject();
+        }
+
+        @Override
+        public EvaluationListPayload read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            EvaluationListPayload payload = new EvaluationListPayload(new ArrayList<>(), 0, 0);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "evaluations":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            payload.getEvaluations().add(readItem(in));
+                        }
+                        in.endArray();
+                        break;
+                    case "totalEvaluations":
+                        payload.setTotalEvaluations(in.nextInt());
+                        break;
+                    case "averageRating":
+                        payload.setAverageRating(in.nextDouble());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return payload;
+        }
+
+        private Item readItem(JsonReader in) throws IOException {
+            Item item = new Item(null, null, null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        item.setId(PayloadReader.nextLong(in));
+                        break;
+                    case "rating":
+                        item.setRating(PayloadReader.nextInt(in));
+                        break;
+                    case "comment":
+                        item.setComment(PayloadReader.nextString(in));
+                        break;
+                    case "date":
+                        item.setDate(PayloadReader.nextString(in));
+                        break;
+                    case "clientName":
+                        item.setClientName(PayloadReader.nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return item;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.consultoria.app.tcp.payload;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dados da resposta de REQUEST LIST. Serializado pelo {@link Adapter} direto
+ * no JsonWriter, com o mesmo formato da árvore JsonObject usada antes:
+ * {"requests": [{"id", "status", "progress", "createdAt", "consultantName" | "clientName"}]}
+ */
+@Data
+@AllArgsConstructor
+public class RequestListPayload {
+    private List<Item> requests;
+
+    @Data
+    @AllArgsConstructor
+    public static class Item {
+        private Long id;
+        private String status;
+        private Integer progress;
+        private String createdAt;
+        private String consultantName;
+        private String clientName;
+    }
+
+    /**
+     * Escreve e lê o formato acima (leitura usada por clientes Java e testes)
+     */
+    public static class Adapter extends TypeAdapter<RequestListPayload> {
+        @Override
+        public void write(JsonWriter out, RequestListPayload payload) throws IOException {
+            out.beginObject();
+            out.name("requests").beginArray();
+            for (Item item : payload.getRequests()) {
+                out.beginObject();
+                out.name("id").value(item.getId());
+                out.name("status").value(item.getStatus());
+                out.name("progress").value(item.getProgress());
+                out.name("createdAt").value(item.getCreatedAt());
+                out.name("consultantName").value(item.getConsultantName());
+                out.name("clientName").value(item.getClientName());
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public RequestListPayload read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<Item> requests = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"requests".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    requests.add(readItem(in));
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return new RequestListPayload(requests);
+        }
+
+        private Item readItem(JsonReader in) throws IOException {
+            Item item = new Item(null, null, null, null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        item.setId(PayloadReader.nextLong(in));
+                        break;
+                    case "status":
+                        item.setStatus(PayloadReader.nextString(in));
+                        break;
+                    case "progress":
+                        item.setProgress(PayloadReader.nextInt(in));
+                        break;
+                    case "createdAt":
+                        item.setCreatedAt(PayloadReader.nextString(in));
+                        break;
+                    case "consultantName":
+                        item.setConsultantName(PayloadReader.nextString(in));
+                        break;
+                    case "clientName":
+                        item.setClientName(PayloadReader.nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return item;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sessão do bridge no processo: envios enfileirados e contados no
+ * OutboundQueue da conexão, escritos pelo writer em ordem
+ */
+class BridgeConnectionTest {
+
+    private final ConnectionRegistry registry = new ConnectionRegistry();
+    private final FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+    private final BlockingQueue<Runnable> writes = new LinkedBlockingQueue<>();
+
+    @Test
+    void sendIsQueuedAndCountedUntilWritten() throws Exception {
+        BridgeConnection connection = new BridgeConnection(session, new CommandDispatcher(new CommandRouter()),
+                registry, new ConnectionSettings(), writes::add);
+        assertEquals(1, registry.size());
+
+        connection.send(Protocol.createPong("r1"));
+        connection.sendAsync(Protocol.createPong("r2"));
+
+        // Nada escrito por quem chamou: os bytes esperam contados na fila
+        assertTrue(session.sent.isEmpty());
+        assertTrue(connection.getOutbound().getQueuedBytes() > 0);
+
+        Runnable write = writes.poll(1, TimeUnit.SECONDS);
+        assertNotNull(write);
+        write.run();
+
+        assertEquals(2, session.sent.size());
+        assertTrue(((TextMessage) session.sent.get(0)).getPayload().contains("\"r1\""));
+        assertTrue(((TextMessage) session.sent.get(1)).getPayload().contains("\"r2\""));
+        assertEquals(0, connection.getOutbound().getQueuedBytes());
+
+        connection.closed();
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void overflowClosesTheSession() {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setOutboundHighWatermark(64);
+        settings.setOutboundLowWatermark(32);
+        settings.setOutboundMaxBytes(64);
+        BridgeConnection connection = new BridgeConnection(session, new CommandDispatcher(new CommandRouter()),
+                registry, settings, writes::add);
+
+        // Writer parado: o segundo frame passa do máximo da fila
+        connection.send(Protocol.createError("r1", "primeira resposta, maior que o limite da fila"));
+        assertFalse(connection.getOutbound().isWritable());
+        connection.send(Protocol.createError("r2", "segunda"));
+
+        assertFalse(session.isOpen());
+    }
+}
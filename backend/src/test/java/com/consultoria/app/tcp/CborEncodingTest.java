@@ -0,0 +1,90 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.payload.EvaluationListPayload;
+import com.consultoria.app.tcp.payload.RequestListPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Payload tipado escrito direto no gerador CBOR produz o mesmo documento
+ * que a árvore JSON equivalente; byte strings recebidas chegam cruas
+ */
+class CborEncodingTest {
+
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+    @Test
+    void typedPayloadMatchesTree() throws Exception {
+        RequestListPayload requests = new RequestListPayload(Arrays.asList(
+                new RequestListPayload.Item(1L, "PENDING", 0, "2024-01-01T10:00", null, "Ana"),
+                new RequestListPayload.Item(2L, "DONE", 100, "2024-01-02T10:00", "Bruno", null)));
+        assertSameDocument(Protocol.createTypedSuccess("r1", "Lista obtida", requests));
+
+        EvaluationListPayload evaluations = new EvaluationListPayload(Collections.singletonList(
+                new EvaluationListPayload.Item(7L, 4, "Bom", "2024-03-01", "Carla")), 1, 4.5);
+        assertSameDocument(Protocol.createChunk("r2", "Lista obtida", evaluations, 3, true));
+    }
+
+    @Test
+    void nullMembersAreOmitted() throws Exception {
+        RequestListPayload requests = new RequestListPayload(Collections.singletonList(
+                new RequestListPayload.Item(1L, "PENDING", null, "2024-01-01T10:00", null, null)));
+
+        JsonNode item = cbor.readTree(CborEncoding.encode(Protocol.createTypedSuccess("r1", "ok", requests)))
+                .get("data").get("requests").get(0);
+
+        assertFalse(item.has("progress"));
+        assertFalse(item.has("consultantName"));
+        assertEquals(1L, item.get("id").asLong());
+    }
+
+    @Test
+    void byteStringInDataArrivesAsBinary() throws Exception {
+        byte[] content = { 0, 1, 2, (byte) 0xFF };
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("action", "UPLOAD");
+        data.put("fileName", "a.bin");
+        data.put("content", content);
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "FILE");
+        message.put("requestId", "r1");
+        message.put("data", data);
+
+        Protocol.Message decoded = CborEncoding.decode(ByteBuffer.wrap(cbor.writeValueAsBytes(message)));
+        assertArrayEquals(content, decoded.getBinary());
+        assertFalse(decoded.getData().has("content"));
+        assertEquals("a.bin", decoded.getData().get("fileName").getAsString());
+
+        // Byte string fora do primeiro nível de data não vira texto: a mensagem é inválida
+        data.put("content", Collections.singletonMap("nested", content));
+        assertNull(CborEncoding.decode(ByteBuffer.wrap(cbor.writeValueAsBytes(message))));
+    }
+
+    private void assertSameDocument(Protocol.Response typed) throws Exception {
+        JsonObject tree = Protocol.toJsonTree(typed);
+        Protocol.Response fromTree = new Protocol.Response();
+        fromTree.setType(typed.getType());
+        fromTree.setRequestId(typed.getRequestId());
+        fromTree.setSuccess(typed.isSuccess());
+        fromTree.setMessage(typed.getMessage());
+        fromTree.setSeq(typed.getSeq());
+        fromTree.setLast(typed.getLast());
+        fromTree.setData(tree.getAsJsonObject("data"));
+
+        assertEquals(cbor.readTree(CborEncoding.encode(fromTree)), cbor.readTree(CborEncoding.encode(typed)));
+    }
+}
@@ -0,0 +1,168 @@
+package com.consultoria.app.tcp;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Listagem em partes lida por páginas de chave, cada uma em sua transação,
+ * com os frames enviados fora dela
+ */
+class ChunkedResponsesTest {
+
+    private final FakeTransactions transactions = new FakeTransactions();
+    private final RecordingConnection connection = new RecordingConnection();
+    private final ChunkedResponses chunked = new ChunkedResponses();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(chunked, "maxChunkSize", 500);
+        ReflectionTestUtils.setField(chunked, "writableTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(chunked, "transactionManager", transactions);
+        chunked.initialize();
+    }
+
+    @Test
+    void sendsPagesOutsideTheTransaction() {
+        List<Long> ids = Arrays.asList(3L, 5L, 8L, 9L, 12L);
+        List<Long> afterIds = new ArrayList<>();
+
+        Protocol.Response last = chunked.stream(message(2), "Lista obtida", (afterId, page) -> {
+            assertTrue(transactions.active);
+            afterIds.add(afterId);
+            List<Long> rows = new ArrayList<>();
+            for (Long id : ids) {
+                if (id > afterId && rows.size() < page.getPageSize()) {
+                    rows.add(id);
+                }
+            }
+            return rows;
+        }, Function.identity(), rows -> new ArrayList<>(rows));
+
+        assertEquals(Arrays.asList(0L, 5L, 9L), afterIds);
+        assertEquals(3, transactions.commits);
+        assertEquals(2, connection.sent.size());
+        assertFalse(connection.sentInTransaction);
+        assertEquals(Integer.valueOf(0), connection.sent.get(0).getSeq());
+        assertEquals(Arrays.asList(3L, 5L), connection.sent.get(0).getPayload());
+        assertEquals(Integer.valueOf(2), last.getSeq());
+        assertEquals(Boolean.TRUE, last.getLast());
+        assertEquals(Arrays.asList(12L), last.getPayload());
+    }
+
+    @Test
+    void rejectsNonNumericChunkSize() {
+        Protocol.Message message = message(1);
+        message.getData().addProperty("chunkSize", "muitos");
+
+        assertTrue(chunked.isRequested(message));
+        Protocol.Response response = chunked.stream(message, "Lista obtida",
+                (afterId, page) -> new ArrayList<Long>(), Function.identity(), rows -> rows);
+
+        assertFalse(response.isSuccess());
+        assertEquals(0, transactions.commits);
+    }
+
+    @Test
+    void zeroChunkSizeIsASingleFrame() {
+        assertFalse(chunked.isRequested(message(0)));
+    }
+
+    private Protocol.Message message(int chunkSize) {
+        JsonObject data = new JsonObject();
+        data.addProperty("chunkSize", chunkSize);
+        Protocol.Message message = new Protocol.Message();
+        message.setType("REQUEST");
+        message.setRequestId("r1");
+        message.setData(data);
+        message.setConnection(connection);
+        return message;
+    }
+
+    private static class FakeTransactions implements PlatformTransactionManager {
+        boolean active;
+        int commits;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            active = true;
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            active = false;
+            commits++;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            active = false;
+        }
+    }
+
+    private class RecordingConnection implements TcpConnection {
+        final List<Protocol.Response> sent = new ArrayList<>();
+        final OutboundQueue outbound = new OutboundQueue(new ConnectionSettings());
+        boolean sentInTransaction;
+
+        @Override
+        public String getId() {
+            return "rec";
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "rec";
+        }
+
+        @Override
+        public long getConnectedAt() {
+            return 0;
+        }
+
+        @Override
+        public int getInFlight() {
+            return 0;
+        }
+
+        @Override
+        public OutboundQueue getOutbound() {
+            return outbound;
+        }
+
+        @Override
+        public long getLastActivity() {
+            return 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void send(Protocol.Response response) {
+            sentInTransaction |= transactions.active;
+            sent.add(response);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.consultoria.app.tcp;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cliente que para de ler no modo bloqueante: a escrita trava abaixo do high
+ * watermark e mesmo assim o closeSlowConsumers precisa fechar a conexão
+ */
+class ClientHandlerSlowConsumerTest {
+
+    private ServerSocket server;
+    private Socket client;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void closesConnectionWhoseBlockingWriteStalls() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = new Socket();
+        client.setReceiveBufferSize(4096);
+        client.connect(server.getLocalSocketAddress());
+        Socket accepted = server.accept();
+        accepted.setSendBufferSize(4096);
+
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setOutboundHighWatermark(64 * 1024 * 1024);
+        settings.setOutboundMaxBytes(128 * 1024 * 1024);
+        ConnectionRegistry registry = new ConnectionRegistry();
+        ClientHandler handler = new ClientHandler(accepted, new CommandDispatcher(new CommandRouter()),
+                registry, new IdleMonitor(null, 0, 0, Runnable::run), settings, null, Runnable::run);
+        Thread reader = new Thread(handler);
+        reader.start();
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 4 * 1024 * 1024; i++) {
+            text.append('x');
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("text", text.toString());
+        waitUntil(handler::isOpen);
+        Thread writer = new Thread(() -> handler.send(Protocol.createSuccess("1", "ok", data)));
+        writer.start();
+
+        waitUntil(() -> handler.getOutbound().getWriteStartedAt() > 0);
+        Thread.sleep(300);
+        assertTrue(handler.getOutbound().isWritable(), "fila ainda abaixo do high watermark");
+
+        registry.closeSlowConsumers(100);
+
+        writer.join(5000);
+        reader.join(5000);
+        assertFalse(writer.isAlive(), "escrita bloqueada não foi interrompida");
+        assertFalse(handler.isOpen());
+        assertTrue(registry.getConnections().isEmpty());
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condição não atingida");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
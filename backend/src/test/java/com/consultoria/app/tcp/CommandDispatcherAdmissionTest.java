@@ -0,0 +1,117 @@
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Permissão global reservada ao enfileirar o frame: acima do limite o
+ * cliente recebe BUSY na hora, e a permissão volta quando o comando termina
+ */
+class CommandDispatcherAdmissionTest {
+
+    private static final TcpConnection CONNECTION = new StubConnection();
+
+    @Test
+    void answersBusyWhenPermitsAreTaken() {
+        CommandDispatcher dispatcher = new CommandDispatcher(new CommandRouter());
+        dispatcher.setCommandLimit(1, 250);
+
+        assertTrue(dispatcher.tryAdmit());
+        assertFalse(dispatcher.tryAdmit());
+
+        Protocol.Response busy = dispatcher.reject(frame("{\"type\":\"PROJECT\",\"requestId\":\"r1\"}"), CONNECTION);
+        assertEquals(Protocol.BUSY, busy.getType());
+        assertEquals("r1", busy.getRequestId());
+        assertEquals(250, busy.getData().get("retryAfterMs").getAsLong());
+    }
+
+    @Test
+    void heartbeatIsAnsweredEvenWhenBusy() {
+        CommandDispatcher dispatcher = new CommandDispatcher(new CommandRouter());
+        dispatcher.setCommandLimit(1, 250);
+        assertTrue(dispatcher.tryAdmit());
+
+        Protocol.Response pong = dispatcher.reject(frame("{\"type\":\"PING\",\"requestId\":\"p1\"}"), CONNECTION);
+        assertEquals(Protocol.PONG, pong.getType());
+        assertNull(dispatcher.reject(frame("{\"type\":\"PONG\",\"requestId\":\"p2\"}"), CONNECTION));
+    }
+
+    @Test
+    void admittedDispatchReleasesPermit() {
+        CommandDispatcher dispatcher = new CommandDispatcher(new CommandRouter());
+        dispatcher.setCommandLimit(1, 250);
+
+        assertTrue(dispatcher.tryAdmit());
+        dispatcher.dispatchAdmitted(frame("{\"type\":\"PING\",\"requestId\":\"p1\"}"), CONNECTION);
+        assertTrue(dispatcher.tryAdmit());
+    }
+
+    @Test
+    void abandonedFrameReleasesPermitAndAnswersTheClient() {
+        CommandDispatcher dispatcher = new CommandDispatcher(new CommandRouter());
+        dispatcher.setCommandLimit(1, 250);
+
+        assertTrue(dispatcher.tryAdmit());
+        dispatcher.setDraining(true);
+        Protocol.Response error = dispatcher.abandon(frame("{\"type\":\"PROJECT\",\"requestId\":\"r1\"}"));
+        assertEquals("r1", error.getRequestId());
+        assertFalse(error.isSuccess());
+        assertTrue(dispatcher.tryAdmit());
+    }
+
+    private static FrameCodec.Frame frame(String json) {
+        return new FrameCodec.Frame(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    private static class StubConnection implements TcpConnection {
+        @Override
+        public String getId() {
+            return "stub";
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "stub";
+        }
+
+        @Override
+        public long getConnectedAt() {
+            return 0;
+        }
+
+        @Override
+        public int getInFlight() {
+            return 0;
+        }
+
+        @Override
+        public OutboundQueue getOutbound() {
+            return null;
+        }
+
+        @Override
+        public long getLastActivity() {
+            return 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void send(Protocol.Response response) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
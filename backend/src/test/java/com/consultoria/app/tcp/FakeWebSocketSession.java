@@ -0,0 +1,133 @@
+package com.consultoria.app.tcp;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Sessão WebSocket em memória: guarda o que foi enviado e pode segurar
+ * os envios até {@link #unblock()}, como um navegador parado
+ */
+class FakeWebSocketSession implements WebSocketSession {
+    final List<WebSocketMessage<?>> sent = new CopyOnWriteArrayList<>();
+    final List<Thread> senders = new CopyOnWriteArrayList<>();
+    private final String id;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile boolean open = true;
+    volatile CloseStatus closeStatus;
+
+    FakeWebSocketSession(String id) {
+        this.id = id;
+    }
+
+    void block() {
+        gate = new CountDownLatch(1);
+    }
+
+    void unblock() {
+        gate.countDown();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        senders.add(Thread.currentThread());
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sent.add(message);
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        open = false;
+        closeStatus = status;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return null;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return new HttpHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return 0;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return 0;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,53 @@
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HELLO com campos de tipo errado recebe erro em vez de derrubar a conexão
+ */
+class HandshakeTest {
+
+    private final ConnectionSettings settings = new ConnectionSettings();
+    private final FrameCodec line = new LineFrameCodec(1024 * 1024);
+
+    @Test
+    void rejectsFieldsWithWrongType() {
+        settings.setLengthPrefixedFraming(true);
+        String[] invalid = {
+                "{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":{\"version\":\"dois\"}}",
+                "{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":{\"version\":{}}}",
+                "{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":{\"framing\":[1]}}",
+                "{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":{\"encoding\":{\"a\":1}}}",
+                "{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":{\"capabilities\":\"binary\"}}",
+                "{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":{\"capabilities\":[{}]}}"
+        };
+        for (String json : invalid) {
+            Handshake handshake = Handshake.accept(frame(json), line, settings);
+            assertFalse(handshake.getResponse().isSuccess(), json);
+            assertEquals("h", handshake.getResponse().getRequestId());
+            assertSame(line, handshake.getCodec());
+        }
+    }
+
+    @Test
+    void acceptsValidHello() {
+        settings.setLengthPrefixedFraming(true);
+        Handshake handshake = Handshake.accept(frame("{\"type\":\"HELLO\",\"requestId\":\"h\",\"data\":"
+                + "{\"version\":2,\"framing\":\"length-prefixed\",\"capabilities\":[\"binary\"]}}"), line, settings);
+
+        assertTrue(handshake.getResponse().isSuccess());
+        assertEquals(Protocol.FRAMING_LENGTH_PREFIXED, handshake.getCodec().getFraming());
+    }
+
+    private static FrameCodec.Frame frame(String json) {
+        return new FrameCodec.Frame(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
@@ -0,0 +1,130 @@
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PING enviado fora da thread do timer e comandos em execução contando como
+ * atividade da conexão
+ */
+class IdleMonitorTest {
+
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        timer = new HashedWheelTimer("Test-Idle-Timer", 10, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    void blockedPingDoesNotStallTimer() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeConnection stuck = new FakeConnection() {
+            @Override
+            public void send(Protocol.Response response) {
+                awaitQuietly(release);
+            }
+        };
+        FakeConnection idle = new FakeConnection();
+        IdleMonitor monitor = new IdleMonitor(timer, 50, 300, task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            thread.start();
+        });
+        try {
+            monitor.watch(stuck);
+            monitor.watch(idle);
+
+            // Com o PING da primeira conexão travado, a segunda ainda é fechada no prazo
+            assertTrue(idle.closed.await(2, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void runningCommandKeepsConnectionOpen() throws Exception {
+        FakeConnection busy = new FakeConnection();
+        busy.inFlight = 1;
+        new IdleMonitor(timer, 50, 200, Runnable::run).watch(busy);
+
+        assertFalse(busy.closed.await(600, TimeUnit.MILLISECONDS));
+        assertEquals(0, busy.pings);
+
+        busy.inFlight = 0;
+        assertTrue(busy.closed.await(2, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FakeConnection implements TcpConnection {
+        private final long connectedAt = System.currentTimeMillis();
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile int inFlight;
+        volatile int pings;
+
+        @Override
+        public String getId() {
+            return "fake";
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "fake";
+        }
+
+        @Override
+        public long getConnectedAt() {
+            return connectedAt;
+        }
+
+        @Override
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        @Override
+        public OutboundQueue getOutbound() {
+            return null;
+        }
+
+        @Override
+        public long getLastActivity() {
+            return connectedAt;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closed.getCount() > 0;
+        }
+
+        @Override
+        public void send(Protocol.Response response) {
+            pings++;
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.tcp.handler.AuthCommandHandler;
+import com.consultoria.app.tcp.handler.CommandHandler;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Modo multiplexed contra TCPServers reais do processo, em portas
+ * diferentes: divisão das sessões, failover, assinaturas refeitas e logins
+ * retomados (cada servidor com seu próprio SessionManager)
+ */
+class MultiplexedBridgeTest {
+
+    private static final String LOGIN = "{\"type\":\"AUTH\",\"requestId\":\"l\","
+            + "\"data\":{\"action\":\"LOGIN\",\"email\":\"ana@teste.com\",\"password\":\"segredo\"}}";
+
+    private final List<TCPServer> servers = new ArrayList<>();
+    private final List<SubscriptionRegistry> registries = new ArrayList<>();
+    private MultiplexedBridge bridge;
+
+    @AfterEach
+    void tearDown() {
+        if (bridge != null) {
+            bridge.shutdown();
+        }
+        for (TCPServer server : servers) {
+            if (server.isRunning()) {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    void sessionsAreSplitAcrossServers() throws Exception {
+        List<InetSocketAddress> addresses = Arrays.asList(startServer(10, 4), startServer(10, 4));
+        bridge = new MultiplexedBridge(addresses, 1, 60000, 15000, 120000, 1000);
+
+        FakeWebSocketSession first = new FakeWebSocketSession("ws1");
+        FakeWebSocketSession second = new FakeWebSocketSession("ws2");
+        bridge.open(first);
+        bridge.open(second);
+
+        bridge.forward(first, "{\"type\":\"WHERE\",\"requestId\":\"a\"}");
+        bridge.forward(second, "{\"type\":\"WHERE\",\"requestId\":\"b\"}");
+
+        JsonObject fromFirst = await(first, "a");
+        JsonObject fromSecond = await(second, "b");
+        assertNotEquals(port(fromFirst), port(fromSecond));
+    }
+
+    @Test
+    void sessionMigratesAndResubscribesWhenItsServerStops() throws Exception {
+        List<InetSocketAddress> addresses = Arrays.asList(startServer(10, 4), startServer(10, 4));
+        bridge = new MultiplexedBridge(addresses, 1, 60000, 15000, 120000, 1000);
+
+        // Empate entre conexões sem pedidos nem sessões: a primeira da lista
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        bridge.open(session);
+        bridge.forward(session, "{\"type\":\"SUBSCRIBE\",\"requestId\":\"s\",\"data\":{\"topic\":\"request:1\"}}");
+        assertTrue(await(session, "s").get("success").getAsBoolean());
+        assertEquals(1, registries.get(0).getTopicCount());
+
+        servers.get(0).stop();
+
+        // A assinatura refeita no outro servidor, sem fechar o WebSocket
+        waitFor(() -> registries.get(1).getTopicCount() == 1);
+        assertTrue(session.isOpen());
+        assertEquals(servers.get(1).getPort(), port(send(session, "w")));
+
+        JsonObject data = new JsonObject();
+        data.addProperty("status", "DONE");
+        registries.get(1).publish("request:1", "STATUS_CHANGED", data);
+        JsonObject event = awaitEvent(session, "STATUS_CHANGED");
+        assertEquals("request:1", event.getAsJsonObject("data").get("topic").getAsString());
+    }
+
+    @Test
+    void refusedResubscribeIsReportedToTheSession() throws Exception {
+        // O segundo servidor não aceita assinaturas
+        List<InetSocketAddress> addresses = Arrays.asList(startServer(10, 4), startServer(0, 4));
+        bridge = new MultiplexedBridge(addresses, 1, 60000, 15000, 120000, 1000);
+
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        bridge.open(session);
+        bridge.forward(session, "{\"type\":\"SUBSCRIBE\",\"requestId\":\"s\",\"data\":{\"topic\":\"request:1\"}}");
+        assertTrue(await(session, "s").get("success").getAsBoolean());
+
+        servers.get(0).stop();
+
+        JsonObject lost = awaitEvent(session, MultiplexedBridge.SUBSCRIPTION_LOST);
+        assertEquals("request:1", lost.getAsJsonObject("data").get("topic").getAsString());
+        assertTrue(session.isOpen());
+        assertEquals(servers.get(1).getPort(), port(send(session, "w")));
+    }
+
+    @Test
+    void slowCommandDelayingThePongKeepsTheConnection() throws Exception {
+        // Servidor sequencial: o PING espera o comando longo terminar
+        List<InetSocketAddress> addresses = Arrays.asList(startServer(10, 1));
+        bridge = new MultiplexedBridge(addresses, 1, 100, 300, 120000, 1000);
+
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        bridge.open(session);
+        bridge.forward(session, "{\"type\":\"SLOW\",\"requestId\":\"s\"}");
+
+        JsonObject response = await(session, "s");
+        assertTrue(response.get("success").getAsBoolean());
+        assertEquals(servers.get(0).getPort(), port(send(session, "w")));
+    }
+
+    @Test
+    void loginIsResumedWhenItsServerStops() throws Exception {
+        List<InetSocketAddress> addresses = Arrays.asList(startServer(10, 4), startServer(10, 4));
+        bridge = new MultiplexedBridge(addresses, 1, 60000, 15000, 120000, 1000);
+
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        bridge.open(session);
+        JsonObject login = loginThrough(session);
+        String sessionId = login.getAsJsonObject("data").get("sessionId").getAsString();
+        // O ticket de retomada fica no bridge
+        assertFalse(login.getAsJsonObject("data").has("resumeTicket"));
+
+        bridge.forward(session, "{\"type\":\"SUBSCRIBE\",\"requestId\":\"s\",\"sessionId\":\"" + sessionId
+                + "\",\"data\":{\"topic\":\"request:1\"}}");
+        assertTrue(await(session, "s").get("success").getAsBoolean());
+        assertEquals(servers.get(0).getPort(), port(who(session, sessionId, "w1")));
+
+        servers.get(0).stop();
+
+        // O outro servidor nunca viu o login: o bridge o retoma antes de refazer a assinatura
+        waitFor(() -> registries.get(1).getTopicCount() == 1);
+        JsonObject response = who(session, sessionId, "w2");
+        assertTrue(response.get("success").getAsBoolean());
+        assertEquals(servers.get(1).getPort(), port(response));
+    }
+
+    @Test
+    void newTabFollowsTheServerOfItsLogin() throws Exception {
+        List<InetSocketAddress> addresses = Arrays.asList(startServer(10, 4), startServer(10, 4));
+        bridge = new MultiplexedBridge(addresses, 1, 60000, 15000, 120000, 1000);
+
+        FakeWebSocketSession first = new FakeWebSocketSession("ws1");
+        bridge.open(first);
+        String sessionId = loginThrough(first).getAsJsonObject("data").get("sessionId").getAsString();
+
+        // A nova aba abre na conexão com menos sessões, mas o login segue para o servidor que o criou
+        FakeWebSocketSession second = new FakeWebSocketSession("ws2");
+        bridge.open(second);
+        assertEquals(servers.get(1).getPort(), port(send(second, "w1")));
+        JsonObject response = who(second, sessionId, "w2");
+        assertTrue(response.get("success").getAsBoolean());
+        assertEquals(servers.get(0).getPort(), port(response));
+    }
+
+    /**
+     * TCPServer do processo com SessionManager próprio, AUTH real (usuário
+     * único em repositório simulado), um handler que responde a porta, WHO
+     * que exige sessão, outro que demora 1s e SUBSCRIBE limitado a
+     * maxSubscriptions tópicos por conexão
+     */
+    private InetSocketAddress startServer(int maxSubscriptions, int maxInFlight) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        ReflectionTestUtils.setField(registry, "maxPerConnection", maxSubscriptions);
+
+        TCPServer server = new TCPServer();
+        ReflectionTestUtils.setField(server, "port", port);
+        ReflectionTestUtils.setField(server, "mode", "blocking");
+        ReflectionTestUtils.setField(server, "executor", "platform");
+        ReflectionTestUtils.setField(server, "threads", 4);
+        ReflectionTestUtils.setField(server, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(server, "outboundHighWatermark", 1 << 20);
+        ReflectionTestUtils.setField(server, "outboundLowWatermark", 1 << 18);
+        ReflectionTestUtils.setField(server, "outboundMaxBytes", 1 << 25);
+        ReflectionTestUtils.setField(server, "slowConsumerTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(server, "heartbeatIntervalMs", 30000L);
+        ReflectionTestUtils.setField(server, "idleTimeoutMs", 90000L);
+        ReflectionTestUtils.setField(server, "maxFrameBytes", 1 << 20);
+        ReflectionTestUtils.setField(server, "maxConnections", 10);
+        ReflectionTestUtils.setField(server, "admissionQueue", 10);
+        ReflectionTestUtils.setField(server, "admissionTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(server, "busyRetryAfterMs", 500L);
+        ReflectionTestUtils.setField(server, "drainTimeoutMs", 200L);
+        ReflectionTestUtils.setField(server, "reconnectJitterMs", 100L);
+        ReflectionTestUtils.setField(server, "subscriptionRegistry", registry);
+        ReflectionTestUtils.setField(server, "sessionManager", new SessionManager());
+        ReflectionTestUtils.setField(server, "commandRouter", new CommandRouter());
+        ReflectionTestUtils.setField(server, "commandHandlersList", Arrays.asList(
+                authHandler(),
+                new CommandHandler() {
+                    @Override
+                    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+                        if (sessionManager.validateSession(message.getSessionId()) == null) {
+                            return Protocol.createError(message.getRequestId(), "Sessão inválida");
+                        }
+                        JsonObject data = new JsonObject();
+                        data.addProperty("port", port);
+                        return Protocol.createSuccess(message.getRequestId(), "ok", data);
+                    }
+
+                    @Override
+                    public String getCommandType() {
+                        return "WHO";
+                    }
+                },
+                handler("WHERE", message -> {
+                    JsonObject data = new JsonObject();
+                    data.addProperty("port", port);
+                    return Protocol.createSuccess(message.getRequestId(), "ok", data);
+                }),
+                handler("SLOW", message -> {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject());
+                }),
+                handler(Protocol.SUBSCRIBE, message -> registry.subscribe(message.getConnection(),
+                        message.getData().get("topic").getAsString())
+                        ? Protocol.createSuccess(message.getRequestId(), "Assinatura registrada", null)
+                        : Protocol.createError(message.getRequestId(), "Limite de assinaturas atingido"))));
+        server.initialize();
+        servers.add(server);
+        registries.add(registry);
+        waitFor(server::isRunning);
+        return InetSocketAddress.createUnresolved("localhost", port);
+    }
+
+    /**
+     * AUTH de cada servidor: mesmo usuário e mesmo segredo de ticket
+     */
+    private static AuthCommandHandler authHandler() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("ana@teste.com");
+        user.setName("Ana");
+        user.setRole(User.Role.USER);
+        user.setPassword(new BCryptPasswordEncoder().encode("segredo"));
+        UserRepository users = Mockito.mock(UserRepository.class);
+        Mockito.when(users.findByEmail("ana@teste.com")).thenReturn(Optional.of(user));
+        Mockito.when(users.findById(1L)).thenReturn(Optional.of(user));
+
+        SessionTickets tickets = new SessionTickets();
+        ReflectionTestUtils.setField(tickets, "secret", "segredo-dos-tickets-de-teste");
+        ReflectionTestUtils.setField(tickets, "maxAgeMs", 60000L);
+
+        AuthCommandHandler auth = new AuthCommandHandler();
+        ReflectionTestUtils.setField(auth, "userRepository", users);
+        ReflectionTestUtils.setField(auth, "sessionTickets", tickets);
+        return auth;
+    }
+
+    private static CommandHandler handler(String type, Function<Protocol.Message, Protocol.Response> body) {
+        return new CommandHandler() {
+            @Override
+            public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+                return body.apply(message);
+            }
+
+            @Override
+            public String getCommandType() {
+                return type;
+            }
+        };
+    }
+
+    private JsonObject send(FakeWebSocketSession session, String requestId) {
+        bridge.forward(session, "{\"type\":\"WHERE\",\"requestId\":\"" + requestId + "\"}");
+        try {
+            return await(session, requestId);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonObject loginThrough(FakeWebSocketSession session) throws InterruptedException {
+        bridge.forward(session, LOGIN);
+        JsonObject login = await(session, "l");
+        assertTrue(login.get("success").getAsBoolean());
+        return login;
+    }
+
+    private JsonObject who(FakeWebSocketSession session, String sessionId, String requestId)
+            throws InterruptedException {
+        bridge.forward(session, "{\"type\":\"WHO\",\"requestId\":\"" + requestId + "\",\"sessionId\":\""
+                + sessionId + "\"}");
+        return await(session, requestId);
+    }
+
+    private static int port(JsonObject response) {
+        return response.has("data") ? response.getAsJsonObject("data").get("port").getAsInt() : -1;
+    }
+
+    /**
+     * Resposta recebida pela sessão com o requestId, removida da lista
+     */
+    private static JsonObject await(FakeWebSocketSession session, String requestId) throws InterruptedException {
+        return awaitFrame(session, frame -> frame.has("requestId")
+                && requestId.equals(frame.get("requestId").getAsString()));
+    }
+
+    private static JsonObject awaitEvent(FakeWebSocketSession session, String event) throws InterruptedException {
+        return awaitFrame(session, frame -> Protocol.EVENT.equals(frame.get("type").getAsString())
+                && event.equals(frame.get("message").getAsString()));
+    }
+
+    private static JsonObject awaitFrame(FakeWebSocketSession session,
+            Predicate<JsonObject> matches) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            for (WebSocketMessage<?> message : session.sent) {
+                JsonObject frame = JsonParser.parseString(((TextMessage) message).getPayload()).getAsJsonObject();
+                if (matches.test(frame)) {
+                    session.sent.remove(message);
+                    return frame;
+                }
+            }
+            Thread.sleep(10);
+        }
+        return fail("frame não recebido");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condição não atingida");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Ticket de retomada só vale com a assinatura do mesmo segredo e dentro do prazo
+ */
+class SessionTicketsTest {
+
+    @Test
+    void issuedTicketIsAccepted() {
+        SessionTickets.Ticket ticket = tickets("segredo", 60000).verify(tickets("segredo", 60000).issue("abc", 7L));
+
+        assertEquals("abc", ticket.getSessionId());
+        assertEquals(7L, ticket.getUserId());
+    }
+
+    @Test
+    void tamperedOrForeignTicketIsRefused() {
+        String ticket = tickets("segredo", 60000).issue("abc", 7L);
+
+        assertNull(tickets("segredo", 60000).verify(ticket.replace("abc.7.", "abc.8.")));
+        assertNull(tickets("outro", 60000).verify(ticket));
+        assertNull(tickets("segredo", 60000).verify("abc"));
+        assertNull(tickets("segredo", -1).verify(ticket));
+    }
+
+    private static SessionTickets tickets(String secret, long maxAgeMs) {
+        SessionTickets tickets = new SessionTickets();
+        ReflectionTestUtils.setField(tickets, "secret", secret);
+        ReflectionTestUtils.setField(tickets, "maxAgeMs", maxAgeMs);
+        return tickets;
+    }
+}
@@ -0,0 +1,173 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.model.User;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EVENT publicado é enfileirado na conexão e escrito pelo writer, não pela
+ * thread que publica; assinaturas saem com a sessão que as fez
+ */
+class SubscriptionRegistryTest {
+
+    private ServerSocket server;
+    private Socket client;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void publishLeavesTheWriteToTheConnectionWriter() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = new Socket();
+        client.connect(server.getLocalSocketAddress());
+        client.setSoTimeout(5000);
+        Socket accepted = server.accept();
+
+        BlockingQueue<Runnable> writes = new LinkedBlockingQueue<>();
+        ConnectionRegistry connections = new ConnectionRegistry();
+        ClientHandler handler = new ClientHandler(accepted, new CommandDispatcher(new CommandRouter()),
+                connections, new IdleMonitor(null, 0, 0, Runnable::run), new ConnectionSettings(), null,
+                writes::add);
+        Thread reader = new Thread(handler);
+        reader.start();
+        while (!handler.isOpen()) {
+            Thread.sleep(10);
+        }
+
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        ReflectionTestUtils.setField(registry, "maxPerConnection", 10);
+        assertTrue(registry.subscribe(handler, "request:1"));
+
+        JsonObject data = new JsonObject();
+        data.addProperty("status", "IN_PROGRESS");
+        registry.publish("request:1", "STATUS_CHANGED", data);
+
+        // Nada escrito pela thread do teste: o frame espera na fila de saída
+        assertFalse(handler.getOutbound().isEmpty());
+        Runnable write = writes.poll(1, TimeUnit.SECONDS);
+        assertNotNull(write);
+
+        write.run();
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        JsonObject event = JsonParser.parseString(in.readLine()).getAsJsonObject();
+        assertEquals(Protocol.EVENT, event.get("type").getAsString());
+        assertEquals("request:1", event.getAsJsonObject("data").get("topic").getAsString());
+        assertTrue(handler.getOutbound().isEmpty());
+
+        handler.close();
+        reader.join(5000);
+    }
+
+    @Test
+    void endedSessionLosesOnlyItsOwnSubscriptions() {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        ReflectionTestUtils.setField(registry, "maxPerConnection", 10);
+        RecordingConnection connection = new RecordingConnection();
+
+        // Duas sessões de login na mesma conexão, como no bridge multiplexed
+        assertTrue(registry.subscribe(connection, "request:1", "s1"));
+        assertTrue(registry.subscribe(connection, "request:1", "s2"));
+        assertTrue(registry.subscribe(connection, "request:2", "s1"));
+
+        SessionManager sessionManager = SessionManager.getInstance();
+        String sessionId = sessionManager.createSession(new User());
+        assertTrue(registry.subscribe(connection, "request:3", sessionId));
+        Consumer<String> listener = registry::unsubscribeSession;
+        sessionManager.addInvalidationListener(listener);
+        try {
+            // Logout: a assinatura sai sem esperar a conexão fechar
+            sessionManager.invalidateSession(sessionId);
+        } finally {
+            sessionManager.removeInvalidationListener(listener);
+        }
+        assertFalse(registry.getTopics(connection).contains("request:3"));
+
+        registry.unsubscribeSession("s1");
+        assertEquals(Collections.singleton("request:1"), registry.getTopics(connection));
+        assertEquals(3, connection.sent.size());
+        Protocol.Response ended = connection.sent.get(1);
+        assertEquals(SubscriptionRegistry.SUBSCRIPTION_ENDED, ended.getMessage());
+        assertEquals("s1", ended.getData().get("sessionId").getAsString());
+
+        registry.unsubscribeSession("s2");
+        assertEquals(0, registry.getTopicCount());
+    }
+
+    private static class RecordingConnection implements TcpConnection {
+        final List<Protocol.Response> sent = new ArrayList<>();
+
+        @Override
+        public String getId() {
+            return "conn-1";
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "stub";
+        }
+
+        @Override
+        public long getConnectedAt() {
+            return 0;
+        }
+
+        @Override
+        public int getInFlight() {
+            return 0;
+        }
+
+        @Override
+        public OutboundQueue getOutbound() {
+            return null;
+        }
+
+        @Override
+        public long getLastActivity() {
+            return 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void send(Protocol.Response response) {
+            sent.add(response);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
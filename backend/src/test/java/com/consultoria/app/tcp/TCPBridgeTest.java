@@ -0,0 +1,89 @@
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.handler.CommandHandler;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Configurações do bridge recusadas na inicialização e mensagens do
+ * navegador recebidas em partes
+ */
+class TCPBridgeTest {
+
+    @Test
+    void multiplexedRequiresPipelinedServers() {
+        TCPBridge bridge = new TCPBridge();
+        ReflectionTestUtils.setField(bridge, "mode", TCPBridge.MODE_MULTIPLEXED);
+        ReflectionTestUtils.setField(bridge, "backends", "localhost:8888");
+        ReflectionTestUtils.setField(bridge, "maxInFlight", 1);
+
+        assertThrows(IllegalStateException.class, bridge::initialize);
+    }
+
+    @Test
+    void partialTextMessageIsAssembledBeforeDispatch() throws Exception {
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        TCPBridge bridge = inProcessBridge(session, 1024);
+
+        bridge.handleTextMessage(session, new TextMessage("{\"type\":\"ECHO\",", false));
+        bridge.handleTextMessage(session, new TextMessage("\"requestId\":\"r1\",", false));
+        assertTrue(session.sent.isEmpty());
+        bridge.handleTextMessage(session, new TextMessage("\"data\":{\"text\":\"olá\"}}", true));
+
+        JsonObject response = JsonParser.parseString(((TextMessage) session.sent.get(0)).getPayload())
+                .getAsJsonObject();
+        assertEquals("r1", response.get("requestId").getAsString());
+        assertEquals("olá", response.getAsJsonObject("data").get("text").getAsString());
+    }
+
+    @Test
+    void partialMessageAboveTheLimitClosesTheSession() throws Exception {
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        TCPBridge bridge = inProcessBridge(session, 16);
+
+        bridge.handleTextMessage(session, new TextMessage("{\"type\":\"ECHO\",", false));
+        bridge.handleTextMessage(session, new TextMessage("\"requestId\":\"r1\"}", true));
+
+        assertFalse(session.isOpen());
+        assertEquals(CloseStatus.TOO_BIG_TO_PROCESS, session.closeStatus);
+        assertTrue(session.sent.isEmpty());
+    }
+
+    /**
+     * Bridge in-process com a sessão já aberta e um handler que devolve o data recebido
+     */
+    @SuppressWarnings("unchecked")
+    private TCPBridge inProcessBridge(FakeWebSocketSession session, int maxTextMessageBytes) {
+        CommandRouter router = new CommandRouter();
+        router.register(new CommandHandler() {
+            @Override
+            public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+                return Protocol.createSuccess(message.getRequestId(), "ok", message.getData());
+            }
+
+            @Override
+            public String getCommandType() {
+                return "ECHO";
+            }
+        });
+        TCPBridge bridge = new TCPBridge();
+        ReflectionTestUtils.setField(bridge, "mode", TCPBridge.MODE_IN_PROCESS);
+        ReflectionTestUtils.setField(bridge, "maxTextMessageBytes", maxTextMessageBytes);
+        BridgeConnection connection = new BridgeConnection(session, new CommandDispatcher(router),
+                new ConnectionRegistry(), new ConnectionSettings(), Runnable::run);
+        ((Map<String, BridgeConnection>) ReflectionTestUtils.getField(bridge, "localConnections"))
+                .put(session.getId(), connection);
+        return bridge;
+    }
+}
@@ -0,0 +1,85 @@
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Envio a um navegador parado não bloqueia quem chama; a escrita parada
+ * além do prazo fecha a sessão mesmo sem outro envio
+ */
+class WebSocketSenderTest {
+
+    private final ExecutorService writers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        writers.shutdownNow();
+    }
+
+    @Test
+    void stalledBrowserDoesNotBlockTheCaller() throws Exception {
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        session.block();
+        WebSocketSender sender = new WebSocketSender(session, new OutboundQueue(new ConnectionSettings()),
+                writers, () -> { });
+
+        sender.sendMessage(new TextMessage("primeira"));
+        sender.sendMessage(new TextMessage("segunda"));
+
+        waitFor(() -> !session.senders.isEmpty());
+        assertNotEquals(Thread.currentThread(), session.senders.get(0));
+        assertTrue(sender.getOutbound().getWriteStartedAt() > 0);
+        assertTrue(sender.getOutbound().getQueuedBytes() > 0);
+
+        session.unblock();
+        waitFor(() -> session.sent.size() == 2);
+        assertEquals("primeira", ((TextMessage) session.sent.get(0)).getPayload());
+        assertEquals("segunda", ((TextMessage) session.sent.get(1)).getPayload());
+        waitFor(() -> sender.getOutbound().getQueuedBytes() == 0);
+        assertEquals(0, sender.getOutbound().getWriteStartedAt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bridgeClosesSessionStalledPastTheTimeLimit() throws Exception {
+        TCPBridge bridge = new TCPBridge();
+        ReflectionTestUtils.setField(bridge, "sendTimeLimitMs", 50);
+        FakeWebSocketSession session = new FakeWebSocketSession("ws1");
+        session.block();
+        WebSocketSender sender = new WebSocketSender(session, new OutboundQueue(new ConnectionSettings()),
+                writers, () -> { });
+        ((Map<String, WebSocketSender>) ReflectionTestUtils.getField(bridge, "sessions")).put("ws1", sender);
+
+        sender.sendMessage(new TextMessage("resposta"));
+        waitFor(() -> !session.senders.isEmpty());
+        ReflectionTestUtils.invokeMethod(bridge, "closeStalledSessions");
+        assertTrue(session.isOpen());
+
+        Thread.sleep(100);
+        ReflectionTestUtils.invokeMethod(bridge, "closeStalledSessions");
+        assertFalse(session.isOpen());
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.closeStatus);
+        session.unblock();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condição não atingida");
+            Thread.sleep(10);
+        }
+    }
+}
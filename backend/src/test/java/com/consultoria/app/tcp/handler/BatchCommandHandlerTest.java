@@ -0,0 +1,136 @@
+package com.consultoria.app.tcp.handler;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.CommandRouter;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sub-comandos de um BATCH passam pelo bulkhead do seu tipo e usam o
+ * usuário validado pelo lote
+ */
+class BatchCommandHandlerTest {
+
+    @Test
+    void subCommandGetsBusyWhenBulkheadIsFull() {
+        CommandRouter router = new CommandRouter();
+        router.register(new CommandHandler() {
+            @Override
+            public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+                return Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject());
+            }
+
+            @Override
+            public String getCommandType() {
+                return "FILE";
+            }
+        });
+        router.setBulkhead("FILE", 1);
+
+        BatchCommandHandler batch = new BatchCommandHandler();
+        ReflectionTestUtils.setField(batch, "commandRouter", router);
+        ReflectionTestUtils.setField(batch, "maxMessages", 10);
+        ReflectionTestUtils.setField(batch, "busyRetryAfterMs", 500L);
+
+        SessionManager sessionManager = SessionManager.getInstance();
+        String sessionId = sessionManager.createSession(new User());
+        Protocol.Message message = batchOf(sessionId, "f1", "f2");
+
+        JsonArray results = batch.handle(message, sessionManager).getData().getAsJsonArray("results");
+        assertEquals(2, results.size());
+        assertEquals(true, results.get(0).getAsJsonObject().get("success").getAsBoolean());
+
+        // Com o bulkhead ocupado por outro comando FILE, o sub-comando recebe BUSY
+        Semaphore bulkhead = router.getBulkhead("FILE");
+        bulkhead.acquireUninterruptibly();
+        try {
+            results = batch.handle(batchOf(sessionId, "f3"), sessionManager).getData().getAsJsonArray("results");
+            assertEquals(Protocol.BUSY, results.get(0).getAsJsonObject().get("type").getAsString());
+            assertEquals("f3", results.get(0).getAsJsonObject().get("requestId").getAsString());
+        } finally {
+            bulkhead.release();
+        }
+        assertEquals(1, bulkhead.availablePermits());
+    }
+
+    @Test
+    void sessionIsValidatedOnceForTheWholeBatch() {
+        SessionManager sessionManager = SessionManager.getInstance();
+        User user = new User();
+        String sessionId = sessionManager.createSession(user);
+
+        CommandRouter router = new CommandRouter();
+        router.register(new LogoutOnFirstCall(sessionManager));
+        BatchCommandHandler batch = new BatchCommandHandler();
+        ReflectionTestUtils.setField(batch, "commandRouter", router);
+        ReflectionTestUtils.setField(batch, "maxMessages", 10);
+
+        Protocol.Message message = batchOf(sessionId, "f1", "f2", "f3");
+        for (JsonElement sub : message.getData().getAsJsonArray("messages")) {
+            sub.getAsJsonObject().add("data", action("GET"));
+        }
+
+        // A sessão some no primeiro sub-comando; os seguintes não a consultam de novo
+        JsonArray results = batch.handle(message, sessionManager).getData().getAsJsonArray("results");
+        assertEquals(3, results.size());
+        for (JsonElement result : results) {
+            assertTrue(result.getAsJsonObject().get("success").getAsBoolean());
+        }
+        assertNull(sessionManager.validateSession(sessionId));
+    }
+
+    private static JsonObject action(String name) {
+        JsonObject data = new JsonObject();
+        data.addProperty("action", name);
+        return data;
+    }
+
+    private static Protocol.Message batchOf(String sessionId, String... requestIds) {
+        JsonArray messages = new JsonArray();
+        for (String requestId : requestIds) {
+            JsonObject sub = new JsonObject();
+            sub.addProperty("type", "FILE");
+            sub.addProperty("requestId", requestId);
+            messages.add(sub);
+        }
+        JsonObject data = new JsonObject();
+        data.add("messages", messages);
+
+        Protocol.Message message = new Protocol.Message();
+        message.setType(BatchCommandHandler.BATCH);
+        message.setRequestId("b1");
+        message.setSessionId(sessionId);
+        message.setData(data);
+        return message;
+    }
+
+    private static class LogoutOnFirstCall implements CommandHandler {
+        private final SessionManager sessionManager;
+
+        LogoutOnFirstCall(SessionManager sessionManager) {
+            this.sessionManager = sessionManager;
+        }
+
+        @CommandAction("GET")
+        private Protocol.Response handleGet(Protocol.Message message, User user) {
+            sessionManager.invalidateSession(message.getSessionId());
+            return Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject());
+        }
+
+        @Override
+        public String getCommandType() {
+            return "FILE";
+        }
+    }
+}
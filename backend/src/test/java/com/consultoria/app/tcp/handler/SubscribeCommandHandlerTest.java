@@ -0,0 +1,28 @@
+package com.consultoria.app.tcp.handler;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * SUBSCRIBE sem data responde o erro de validação, não um erro interno
+ */
+class SubscribeCommandHandlerTest {
+
+    @Test
+    void subscribeWithoutDataAsksForTheTopic() {
+        SessionManager sessionManager = SessionManager.getInstance();
+        Protocol.Message message = new Protocol.Message();
+        message.setType(Protocol.SUBSCRIBE);
+        message.setRequestId("s1");
+        message.setSessionId(sessionManager.createSession(new User()));
+
+        Protocol.Response response = new SubscribeCommandHandler().handle(message, sessionManager);
+        assertFalse(response.isSuccess());
+        assertEquals("Tópico não informado", response.getMessage());
+    }
+}
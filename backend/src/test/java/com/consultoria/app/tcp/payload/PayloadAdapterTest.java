@@ -0,0 +1,54 @@
+package com.consultoria.app.tcp.payload;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Os adapters dos payloads leem de volta o que escrevem
+ */
+class PayloadAdapterTest {
+
+    private final Gson gson = new GsonBuilder()
+            .serializeNulls()
+            .registerTypeAdapter(RequestListPayload.class, new RequestListPayload.Adapter())
+            .registerTypeAdapter(EvaluationListPayload.class, new EvaluationListPayload.Adapter())
+            .create();
+
+    @Test
+    void requestListRoundTrip() {
+        RequestListPayload payload = new RequestListPayload(Arrays.asList(
+                new RequestListPayload.Item(1L, "PENDING", 0, "2024-01-01T10:00", null, "Ana"),
+                new RequestListPayload.Item(2L, "IN_PROGRESS", 40, "2024-01-02T10:00", "Bruno", null)));
+
+        String json = gson.toJson(payload);
+
+        assertEquals(payload, gson.fromJson(json, RequestListPayload.class));
+    }
+
+    @Test
+    void evaluationListRoundTrip() {
+        EvaluationListPayload payload = new EvaluationListPayload(Collections.singletonList(
+                new EvaluationListPayload.Item(7L, 5, "Ótimo", "2024-03-01", "Carla")), 1, 5.0);
+
+        String json = gson.toJson(payload);
+
+        assertEquals(payload, gson.fromJson(json, EvaluationListPayload.class));
+    }
+
+    @Test
+    void ignoresUnknownFields() {
+        RequestListPayload payload = gson.fromJson(
+                "{\"extra\":[1,2],\"requests\":[{\"id\":3,\"novo\":{\"a\":1},\"status\":\"DONE\"}]}",
+                RequestListPayload.class);
+
+        assertEquals(1, payload.getRequests().size());
+        assertEquals(3L, payload.getRequests().get(0).getId());
+        assertEquals("DONE", payload.getRequests().get(0).getStatus());
+    }
+}
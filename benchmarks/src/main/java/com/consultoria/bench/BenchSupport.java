@@ -0,0 +1,24 @@
+package com.consultoria.bench;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Monta beans fora do contexto Spring: preenche campos @Value/@Autowired
+ * privados como o container faria
+ */
+final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    static void inject(Object target, String fieldName, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        if (field == null) {
+            throw new IllegalArgumentException("Campo não encontrado: " + fieldName);
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
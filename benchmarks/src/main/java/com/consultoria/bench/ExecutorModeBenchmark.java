@@ -0,0 +1,114 @@
+package com.consultoria.bench;
+
+import com.consultoria.app.tcp.CommandDispatcher;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.TcpExecutors;
+import com.consultoria.app.tcp.handler.CommandHandler;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o pool fixo de threads de plataforma com virtual threads
+ * (tcp.server.executor) executando comandos que bloqueiam como uma chamada
+ * JPA. Cada operação dispara {@code concurrentCommands} comandos de uma vez e
+ * espera todos terminarem.
+ *
+ * Rodar em Java 21+ para medir o modo virtual; em JVMs antigas ele cai no
+ * pool de plataforma.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorModeBenchmark {
+
+    @Param({ TcpExecutors.PLATFORM, TcpExecutors.VIRTUAL })
+    public String executor;
+
+    @Param({ "200", "2000" })
+    public int concurrentCommands;
+
+    /** Latência simulada do banco por comando */
+    @Param({ "5" })
+    public long blockingMillis;
+
+    private ExecutorService pool;
+    private CommandDispatcher dispatcher;
+    private Protocol.Message message;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pool = TcpExecutors.create(executor, 20, "Bench-Worker");
+        dispatcher = new CommandDispatcher(
+                Collections.singletonMap("REQUEST", new BlockingHandler(blockingMillis)));
+
+        message = new Protocol.Message();
+        message.setType("REQUEST");
+        message.setRequestId("bench");
+        message.setData(new JsonObject());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void dispatchBlockingCommands() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrentCommands);
+        for (int i = 0; i < concurrentCommands; i++) {
+            pool.execute(() -> {
+                dispatcher.processCommand(message);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    /**
+     * Handler que apenas bloqueia, simulando findById/save
+     */
+    static class BlockingHandler implements CommandHandler {
+        private final long blockingMillis;
+
+        BlockingHandler(long blockingMillis) {
+            this.blockingMillis = blockingMillis;
+        }
+
+        @Override
+        public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+            try {
+                Thread.sleep(blockingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject());
+        }
+
+        @Override
+        public String getCommandType() {
+            return "REQUEST";
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.consultoria.bench;
+
+import com.consultoria.app.service.FileStorageService;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload e download de arquivos pelo FileStorageService: saveFile a partir
+ * do base64 (modo JSON) e dos bytes crus (seção binária), e leitura de volta
+ * em base64. Grava num diretório temporário, limpo a cada iteração; o
+ * resultado depende do disco, então comparar sempre na mesma máquina.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileStorageBenchmark {
+
+    /** Tamanho do arquivo em bytes (10MB é o limite do upload) */
+    @Param({ "1024", "1048576", "10485760" })
+    public int fileBytes;
+
+    private Path uploadDir;
+    private FileStorageService storage;
+    private byte[] content;
+    private String contentBase64;
+    private String storedFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        uploadDir = Files.createTempDirectory("bench-uploads");
+        storage = new FileStorageService();
+        BenchSupport.inject(storage, "uploadDir", uploadDir.toString());
+
+        content = new byte[fileBytes];
+        new Random(42).nextBytes(content);
+        contentBase64 = Base64.encodeBase64String(content);
+        storedFile = storage.saveFile(content, "relatorio.pdf");
+    }
+
+    /**
+     * Remove os arquivos gravados na iteração, mantendo o usado na leitura
+     */
+    @TearDown(Level.Iteration)
+    public void cleanIteration() {
+        File[] files = uploadDir.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.getName().equals(storedFile)) {
+                file.delete();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.deleteFile(storedFile);
+        Files.deleteIfExists(uploadDir);
+    }
+
+    @Benchmark
+    public String saveFileBase64() throws IOException {
+        return storage.saveFile(contentBase64, "relatorio.pdf");
+    }
+
+    @Benchmark
+    public String saveFileBytes() throws IOException {
+        return storage.saveFile(content, "relatorio.pdf");
+    }
+
+    @Benchmark
+    public String getFileAsBase64() throws IOException {
+        return storage.getFileAsBase64(storedFile);
+    }
+}
@@ -0,0 +1,126 @@
+package com.consultoria.bench;
+
+import com.consultoria.app.tcp.CborEncoding;
+import com.consultoria.app.tcp.Protocol;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de Protocol.decode e da serialização de respostas, em JSON e em
+ * CBOR. A mensagem simula um CHAT SEND e a resposta uma listagem com
+ * {@code items} linhas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    @Param({ "1", "100" })
+    public int items;
+
+    private String messageLine;
+    private ByteBuffer messageJson;
+    private ByteBuffer messageCbor;
+    private Protocol.Response response;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        JsonObject data = new JsonObject();
+        data.addProperty("action", "SEND");
+        data.addProperty("projectId", 42L);
+        data.addProperty("content", "Bom dia, segue o relatório da etapa de diagnóstico.");
+
+        Protocol.Message message = new Protocol.Message();
+        message.setType("CHAT");
+        message.setSessionId("5f0c6a4e-2b1d-4c59-9a5e-0d7c3f1b2a99");
+        message.setRequestId("req-1");
+        message.setData(data);
+
+        messageLine = Protocol.encode(message);
+        messageJson = ByteBuffer.wrap(messageLine.trim().getBytes(StandardCharsets.UTF_8));
+
+        JsonArray rows = new JsonArray();
+        for (int i = 0; i < items; i++) {
+            JsonObject row = new JsonObject();
+            row.addProperty("id", (long) i);
+            row.addProperty("status", "IN_PROGRESS");
+            row.addProperty("progress", i % 100);
+            row.addProperty("createdAt", "2024-01-01T10:00:00");
+            row.addProperty("consultantName", "Consultor " + i);
+            rows.add(row);
+        }
+        JsonObject responseData = new JsonObject();
+        responseData.add("requests", rows);
+        response = Protocol.createSuccess("req-1", "Lista obtida", responseData);
+
+        // Mesmo CHAT SEND, como chegaria numa conexão que negociou CBOR
+        Map<String, Object> cborData = new LinkedHashMap<>();
+        cborData.put("action", "SEND");
+        cborData.put("projectId", 42L);
+        cborData.put("content", data.get("content").getAsString());
+        Map<String, Object> cborMessage = new LinkedHashMap<>();
+        cborMessage.put("type", message.getType());
+        cborMessage.put("sessionId", message.getSessionId());
+        cborMessage.put("requestId", message.getRequestId());
+        cborMessage.put("data", cborData);
+        try {
+            messageCbor = ByteBuffer.wrap(new ObjectMapper(new CBORFactory()).writeValueAsBytes(cborMessage));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public Protocol.Message decodeString() {
+        return Protocol.decode(messageLine);
+    }
+
+    @Benchmark
+    public Protocol.Message decodeBytes() {
+        return Protocol.decode(messageJson);
+    }
+
+    @Benchmark
+    public Protocol.Message decodeCbor() {
+        return CborEncoding.decode(messageCbor);
+    }
+
+    @Benchmark
+    public String encodeResponse() {
+        return Protocol.encodeResponse(response);
+    }
+
+    @Benchmark
+    public byte[] encodeResponseBytes() {
+        return Protocol.encodeResponseBytes(response);
+    }
+
+    @Benchmark
+    public byte[] encodeResponseCbor() {
+        return CborEncoding.encode(response);
+    }
+}
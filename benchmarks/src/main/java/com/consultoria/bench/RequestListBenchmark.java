@@ -0,0 +1,127 @@
+package com.consultoria.bench;
+
+import com.consultoria.app.model.Request;
+import com.consultoria.app.model.User;
+import com.consultoria.app.repository.RequestRepository;
+import com.consultoria.app.tcp.ChunkedResponses;
+import com.consultoria.app.tcp.CommandRouter;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.SubscriptionRegistry;
+import com.consultoria.app.tcp.handler.RequestCommandHandler;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REQUEST LIST de ponta a ponta sem o banco: rota, validação da sessão,
+ * montagem do payload a partir das entidades e serialização em bytes. O
+ * repositório devolve {@code rows} entidades já carregadas, então o tempo
+ * medido é só o do servidor TCP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestListBenchmark {
+
+    @Param({ "10", "1000", "10000" })
+    public int rows;
+
+    @Param({ "USER", "CONSULTANT" })
+    public String role;
+
+    private CommandRouter router;
+    private SessionManager sessionManager;
+    private Protocol.Message message;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        User user = user(1L, "Cliente", User.Role.valueOf(role));
+        User other = user(2L, "Outra parte", user.getRole() == User.Role.USER
+                ? User.Role.CONSULTANT : User.Role.USER);
+
+        List<Request> requests = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Request request = new Request();
+            request.setId((long) i);
+            request.setUser(user.getRole() == User.Role.USER ? user : other);
+            request.setConsultant(i % 2 == 0 ? null : user.getRole() == User.Role.CONSULTANT ? user : other);
+            request.setStatus(i % 2 == 0 ? Request.RequestStatus.PENDING : Request.RequestStatus.IN_PROGRESS);
+            request.setProgress(i % 2 == 0 ? null : i % 100);
+            request.setCreatedAt(LocalDateTime.of(2024, 1, 1, 10, 0));
+            requests.add(request);
+        }
+
+        RequestCommandHandler handler = new RequestCommandHandler();
+        BenchSupport.inject(handler, "requestRepository", repositoryReturning(requests));
+        BenchSupport.inject(handler, "subscriptionRegistry", new SubscriptionRegistry());
+        BenchSupport.inject(handler, "chunkedResponses", new ChunkedResponses());
+        router = new CommandRouter();
+        router.register(handler);
+
+        sessionManager = SessionManager.getInstance();
+        JsonObject data = new JsonObject();
+        data.addProperty("action", "LIST");
+        message = new Protocol.Message();
+        message.setType("REQUEST");
+        message.setRequestId("bench");
+        message.setSessionId(sessionManager.createSession(user));
+        message.setData(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionManager.invalidateSession(message.getSessionId());
+    }
+
+    @Benchmark
+    public byte[] handleList() {
+        return Protocol.encodeResponseBytes(router.route(message, sessionManager));
+    }
+
+    private static User user(Long id, String name, User.Role role) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setRole(role);
+        return user;
+    }
+
+    /**
+     * Repositório em memória: só as consultas usadas pelo LIST
+     */
+    private static RequestRepository repositoryReturning(List<Request> requests) {
+        return (RequestRepository) Proxy.newProxyInstance(RequestRepository.class.getClassLoader(),
+                new Class<?>[] { RequestRepository.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findByUserId":
+                        case "findByConsultantId":
+                            return requests;
+                        case "toString":
+                            return "RequestRepository em memória";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,97 @@
+package com.consultoria.bench;
+
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.payload.RequestListPayload;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara a resposta de REQUEST LIST montada como árvore JsonObject com o
+ * payload tipado escrito pelo TypeAdapter. As duas saídas são idênticas;
+ * cada operação monta os dados a partir das linhas e serializa em bytes.
+ *
+ * Rodar com {@code -prof gc} para ver a alocação por operação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCodecBenchmark {
+
+    @Param({ "10", "1000" })
+    public int listSize;
+
+    /** Linhas simulando o resultado da consulta no repositório */
+    private List<Row> rows;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        rows = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            rows.add(new Row((long) i, i % 2 == 0 ? "PENDING" : "IN_PROGRESS",
+                    i % 2 == 0 ? null : i % 100, "2024-01-01T10:00:00", "Consultor " + i));
+        }
+    }
+
+    @Benchmark
+    public byte[] treeEncode() {
+        JsonArray requestsArray = new JsonArray();
+        for (Row row : rows) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("id", row.id);
+            obj.addProperty("status", row.status);
+            obj.addProperty("progress", row.progress);
+            obj.addProperty("createdAt", row.createdAt);
+            obj.addProperty("consultantName", row.name);
+            requestsArray.add(obj);
+        }
+        JsonObject data = new JsonObject();
+        data.add("requests", requestsArray);
+        return Protocol.encodeResponseBytes(Protocol.createSuccess("bench", "Lista obtida", data));
+    }
+
+    @Benchmark
+    public byte[] typedEncode() {
+        List<RequestListPayload.Item> items = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            items.add(new RequestListPayload.Item(row.id, row.status, row.progress,
+                    row.createdAt, row.name, null));
+        }
+        return Protocol.encodeResponseBytes(Protocol.createTypedSuccess("bench", "Lista obtida",
+                new RequestListPayload(items)));
+    }
+
+    private static class Row {
+        final Long id;
+        final String status;
+        final Integer progress;
+        final String createdAt;
+        final String name;
+
+        Row(Long id, String status, Integer progress, String createdAt, String name) {
+            this.id = id;
+            this.status = status;
+            this.progress = progress;
+            this.createdAt = createdAt;
+            this.name = name;
+        }
+    }
+}
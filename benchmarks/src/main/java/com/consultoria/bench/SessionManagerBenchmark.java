@@ -0,0 +1,76 @@
+package com.consultoria.bench;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.SessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionManager.validateSession chamado por vários workers ao mesmo tempo,
+ * como acontece a cada comando. {@code hotSessions = 1} concentra todas as
+ * threads na mesma sessão (várias abas do mesmo usuário); valores maiores
+ * espalham as chamadas.
+ *
+ * Variar as threads com {@code -t}, ex.: {@code -t 1} e {@code -t 16}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SessionManagerBenchmark {
+
+    @Param({ "1", "1000" })
+    public int hotSessions;
+
+    private SessionManager sessionManager;
+    private String[] sessionIds;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sessionManager = SessionManager.getInstance();
+        sessionIds = new String[hotSessions];
+        for (int i = 0; i < hotSessions; i++) {
+            User user = new User();
+            user.setId((long) i);
+            user.setName("Usuário " + i);
+            user.setRole(User.Role.USER);
+            sessionIds[i] = sessionManager.createSession(user);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (String sessionId : sessionIds) {
+            sessionManager.invalidateSession(sessionId);
+        }
+    }
+
+    @Benchmark
+    public User validateSession() {
+        String sessionId = sessionIds[ThreadLocalRandom.current().nextInt(sessionIds.length)];
+        return sessionManager.validateSession(sessionId);
+    }
+
+    @Benchmark
+    public User validateUnknownSession() {
+        return sessionManager.validateSession("sessao-inexistente");
+    }
+}
@@ -4,6 +4,7 @@ import Navbar from '../components/Navbar';
 import chatService from '../services/chatService';
 import projectService from '../services/projectService';
 import authService from '../services/authService';
+import tcpService from '../services/TCPService';
 
 const ChatPage = () => {
     const { requestId } = useParams();
@@ -19,9 +20,42 @@ const ChatPage = () => {
 
     useEffect(() => {
         loadData();
-        // Poll for new messages every 3 seconds
-        const interval = setInterval(loadMessages, 3000);
-        return () => clearInterval(interval);
+
+        // With a TCP session the server pushes new messages; otherwise poll every 3 seconds
+        let interval = null;
+        let unsubscribe = null;
+        let cancelled = false;
+
+        const startPolling = () => {
+            if (!cancelled && !interval) {
+                interval = setInterval(loadMessages, 3000);
+            }
+        };
+
+        if (tcpService.isAuthenticated()) {
+            tcpService.subscribe(`project:${requestId}:chat`, (event, data) => {
+                if (event === 'MESSAGE') {
+                    setMessages(prev => prev.some(m => m.id === data.id) ? prev : [...prev, data]);
+                }
+            }).then(cancel => {
+                if (cancelled) {
+                    cancel();
+                } else {
+                    unsubscribe = cancel;
+                }
+            }).catch(err => {
+                console.error('Error subscribing to chat:', err);
+                startPolling();
+            });
+        } else {
+            startPolling();
+        }
+
+        return () => {
+            cancelled = true;
+            if (interval) clearInterval(interval);
+            if (unsubscribe) unsubscribe().catch(() => {});
+        };
     }, [requestId]);
 
     useEffect(() => {
@@ -5,6 +5,15 @@ class TCPService {
     constructor() {
         this.sessionId = localStorage.getItem('sessionId');
         this.connected = false;
+
+        // Assinaturas morrem com a conexão: renova ao reconectar
+        tcpClient.onConnect(() => {
+            if (!this.sessionId) return;
+            tcpClient.getEventTopics().forEach(topic => {
+                tcpClient.send('SUBSCRIBE', { topic }, this.sessionId)
+                    .catch(error => console.error(`Erro ao renovar assinatura ${topic}:`, error));
+            });
+        });
     }
 
     // Inicializa conexão
@@ -102,6 +111,101 @@ class TCPService {
         }, this.sessionId);
     }
 
+    // ===== LOTE =====
+
+    // Envia vários comandos em uma única mensagem BATCH
+    // commands: [{ type: 'REQUEST', data: { action: 'LIST' } }, ...]
+    // transactional: tudo ou nada (revertido no primeiro erro)
+    async batch(commands, transactional = false) {
+        const messages = commands.map((command, index) => ({
+            requestId: command.requestId || `batch_${index}`,
+            type: command.type,
+            data: command.data || {}
+        }));
+
+        const response = await tcpClient.send('BATCH', {
+            transactional,
+            messages
+        }, this.sessionId);
+
+        return response.data.results;
+    }
+
+    // ===== LISTAGENS =====
+
+    // Listagem em partes: onChunk(data) é chamado a cada frame assim que chega,
+    // sem esperar a consulta terminar. Ex.: streamList('REQUEST', { action: 'LIST' }, rows => ...)
+    async streamList(type, data, onChunk, chunkSize = 100) {
+        await this.init();
+        return await tcpClient.send(type, {
+            ...data,
+            chunkSize
+        }, this.sessionId, (response) => onChunk(response.data, response.last));
+    }
+
+    // ===== ARQUIVOS =====
+
+    // Envia o arquivo cru numa mensagem binária, sem base64
+    async uploadFile(requestId, file) {
+        await this.init();
+        const content = await file.arrayBuffer();
+        return await tcpClient.send('FILE', {
+            action: 'UPLOAD',
+            requestId,
+            fileName: file.name
+        }, this.sessionId, null, content);
+    }
+
+    // Recebe o arquivo cru numa mensagem binária; retorna { fileName, blob }
+    async downloadFile(fileId) {
+        await this.init();
+        const response = await tcpClient.send('FILE', {
+            action: 'DOWNLOAD',
+            fileId,
+            binary: true
+        }, this.sessionId);
+        return {
+            fileName: response.data.fileName,
+            blob: new Blob([response.binary])
+        };
+    }
+
+    // ===== EVENTOS =====
+
+    // Assina um tópico e chama callback(event, data) a cada EVENT recebido
+    // Tópicos: request:{id}, project:{id}:chat, consultant:{id}:evaluations
+    // Retorna função que cancela a assinatura
+    async subscribe(topic, callback) {
+        await this.init();
+        const removeListener = tcpClient.onEvent(topic, (event, data) => {
+            // Bridge trocou de servidor e não conseguiu refazer a assinatura: assina de novo
+            if (event === 'SUBSCRIPTION_LOST') {
+                tcpClient.send('SUBSCRIBE', { topic }, this.sessionId)
+                    .catch(error => console.error(`Erro ao renovar assinatura ${topic}:`, error));
+                return;
+            }
+            // Sessão encerrada (logout ou expiração): o servidor não envia mais o tópico
+            if (event === 'SUBSCRIPTION_ENDED') {
+                removeListener();
+                return;
+            }
+            callback(event, data);
+        });
+        try {
+            await tcpClient.send('SUBSCRIBE', { topic }, this.sessionId);
+        } catch (error) {
+            removeListener();
+            throw error;
+        }
+
+        return async () => {
+            removeListener();
+            if (!tcpClient.getEventTopics().includes(topic)) {
+                await tcpClient.send('UNSUBSCRIBE', { topic }, this.sessionId);
+            }
+        };
+    }
+
     // ===== UTILIDADES =====
 
     isAuthenticated() {
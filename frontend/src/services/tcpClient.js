@@ -10,6 +10,9 @@ class TCPClient {
         this.onDisconnectCallbacks = [];
         this.reconnectAttempts = 0;
         this.maxReconnectAttempts = 5;
+        this.drainRetryAfter = null;
+        this.eventListeners = new Map();
+        this.chunkListeners = new Map();
     }
 
     // Conecta ao servidor WebSocket
@@ -17,6 +20,8 @@ class TCPClient {
         return new Promise((resolve, reject) => {
             try {
                 this.socket = new WebSocket(url);
+                // Mensagens binárias (arquivos) chegam como ArrayBuffer
+                this.socket.binaryType = 'arraybuffer';
 
                 this.socket.onopen = () => {
                     console.log('✅ Conectado ao servidor TCP/IP');
@@ -36,9 +41,43 @@ class TCPClient {
 
                 this.socket.onmessage = (event) => {
                     try {
-                        const response = JSON.parse(event.data);
+                        const response = typeof event.data === 'string'
+                            ? JSON.parse(event.data)
+                            : decodeBinaryFrame(event.data);
+
+                        // Heartbeat do servidor: responde para manter a conexão viva
+                        if (response.type === 'PING') {
+                            this.socket.send(JSON.stringify({ type: 'PONG' }));
+                            return;
+                        }
+
+                        // Servidor vai reiniciar: reconecta após o intervalo sugerido
+                        if (response.type === 'SERVER_DRAINING' && !response.requestId) {
+                            this.drainRetryAfter = response.data.retryAfterMs;
+                            return;
+                        }
+
+                        // Evento de um tópico assinado com SUBSCRIBE
+                        if (response.type === 'EVENT') {
+                            const listeners = this.eventListeners.get(response.data.topic);
+                            if (listeners) {
+                                listeners.forEach(cb => cb(response.message, response.data));
+                            }
+                            return;
+                        }
+
                         console.log('📩 Resposta recebida:', response);
 
+                        // Resposta em partes: cada frame vai para o listener do pedido;
+                        // só o frame com last=true resolve a Promise
+                        const onChunk = this.chunkListeners.get(response.requestId);
+                        if (onChunk && response.seq !== undefined) {
+                            onChunk(response);
+                            if (response.last === false) {
+                                return;
+                            }
+                        }
+
                         // Chama callback correspondente
                         const callback = this.callbacks.get(response.requestId);
                         if (callback) {
@@ -61,7 +100,12 @@ class TCPClient {
                     this.onDisconnectCallbacks.forEach(cb => cb());
 
                     // Tenta reconectar
-                    if (this.reconnectAttempts < this.maxReconnectAttempts) {
+                    if (this.drainRetryAfter) {
+                        const delay = this.drainRetryAfter;
+                        this.drainRetryAfter = null;
+                        console.log(`🔄 Servidor reiniciando, reconectando em ${delay}ms...`);
+                        setTimeout(() => this.connect(url), delay);
+                    } else if (this.reconnectAttempts < this.maxReconnectAttempts) {
                         this.reconnectAttempts++;
                         console.log(`🔄 Tentativa de reconexão ${this.reconnectAttempts}...`);
                         setTimeout(() => this.connect(url), 2000 * this.reconnectAttempts);
@@ -75,7 +119,9 @@ class TCPClient {
     }
 
     // Envia mensagem e retorna Promise com resposta
-    send(type, data, sessionId = null) {
+    // onChunk: recebe cada frame de uma resposta em partes (data.chunkSize)
+    // binary: bytes (ArrayBuffer/Uint8Array) enviados crus numa mensagem binária
+    send(type, data, sessionId = null, onChunk = null, binary = null) {
         return new Promise((resolve, reject) => {
             const requestId = `req_${++this.requestCounter}_${Date.now()}`;
 
@@ -86,14 +132,20 @@ class TCPClient {
                 data
             };
 
+            if (onChunk) {
+                this.chunkListeners.set(requestId, onChunk);
+            }
+
             // Adiciona callback
             const timeout = setTimeout(() => {
                 this.callbacks.delete(requestId);
+                this.chunkListeners.delete(requestId);
                 reject(new Error('Timeout: servidor não respondeu'));
             }, 30000); // 30 segundos
 
             this.callbacks.set(requestId, (response) => {
                 clearTimeout(timeout);
+                this.chunkListeners.delete(requestId);
                 if (response.success) {
                     resolve(response);
                 } else {
@@ -101,7 +153,9 @@ class TCPClient {
                 }
             });
 
-            const messageStr = JSON.stringify(message);
+            const messageStr = binary
+                ? encodeBinaryFrame(message, binary)
+                : JSON.stringify(message);
 
             if (this.connected && this.socket.readyState === WebSocket.OPEN) {
                 this.socket.send(messageStr);
@@ -118,6 +172,29 @@ class TCPClient {
         this.onConnectCallbacks.push(callback);
     }
 
+    // Registra listener para eventos de um tópico; retorna função que remove o listener
+    onEvent(topic, callback) {
+        if (!this.eventListeners.has(topic)) {
+            this.eventListeners.set(topic, new Set());
+        }
+        this.eventListeners.get(topic).add(callback);
+
+        return () => {
+            const listeners = this.eventListeners.get(topic);
+            if (listeners) {
+                listeners.delete(callback);
+                if (listeners.size === 0) {
+                    this.eventListeners.delete(topic);
+                }
+            }
+        };
+    }
+
+    // Tópicos com listeners registrados
+    getEventTopics() {
+        return Array.from(this.eventListeners.keys());
+    }
+
     // Registra listener para desconexão
     onDisconnect(callback) {
         this.onDisconnectCallbacks.push(callback);
@@ -138,6 +215,30 @@ class TCPClient {
     }
 }
 
+// Mensagem binária: [tamanho do JSON][tamanho do binário][JSON UTF-8][binário],
+// inteiros de 4 bytes big-endian (mesmo formato do enquadramento com prefixo do servidor)
+function encodeBinaryFrame(message, binary) {
+    const json = new TextEncoder().encode(JSON.stringify(message));
+    const bytes = binary instanceof Uint8Array ? binary : new Uint8Array(binary);
+    const frame = new Uint8Array(8 + json.length + bytes.length);
+    const view = new DataView(frame.buffer);
+    view.setUint32(0, json.length);
+    view.setUint32(4, bytes.length);
+    frame.set(json, 8);
+    frame.set(bytes, 8 + json.length);
+    return frame.buffer;
+}
+
+// Resposta binária: o JSON de sempre, com os bytes em response.binary (Uint8Array)
+function decodeBinaryFrame(buffer) {
+    const view = new DataView(buffer);
+    const jsonLength = view.getUint32(0);
+    const binaryLength = view.getUint32(4);
+    const response = JSON.parse(new TextDecoder().decode(new Uint8Array(buffer, 8, jsonLength)));
+    response.binary = new Uint8Array(buffer, 8 + jsonLength, binaryLength);
+    return response;
+}
+
 // Exporta instância única (singleton)
 const tcpClient = new TCPClient();
 export default tcpClient;